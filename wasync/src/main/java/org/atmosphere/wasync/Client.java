@@ -71,4 +71,13 @@ public interface Client<O extends Options, U extends OptionsBuilder, T extends R
      * @return {@link OptionsBuilder}
      */
     U newOptionsBuilder();
+
+    /**
+     * Encode a message once, using the {@link Encoder}s of a {@link Request}, to send it to many {@link Socket}s.
+     *
+     * @param request the {@link Request} the {@link Socket}s have been opened with
+     * @param data    object to send
+     * @return a {@link PreparedMessage}
+     */
+    PreparedMessage prepare(Request request, Object data);
 }
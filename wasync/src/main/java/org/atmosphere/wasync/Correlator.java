@@ -0,0 +1,53 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+/**
+ * Correlate the messages sent using {@link Socket#request(Object, Class, long, java.util.concurrent.TimeUnit)} with
+ * their replies. A request is stamped with a correlation id before being delivered to the set of {@link Encoder},
+ * and the server is expected to stamp its reply with the same id:
+ * <blockquote><pre>
+     Options options = client.newOptionsBuilder().correlator(new Correlator() {
+         public Object inject(Object request, String id) {
+             return ((Command) request).id(id);
+         }
+
+         public String extract(Object message) {
+             return message instanceof Reply ? ((Reply) message).id() : null;
+         }
+     }).build();
+ * </pre></blockquote>
+ * Both methods are invoked concurrently, the replies from the thread dispatching the messages.
+ */
+public interface Correlator {
+
+    /**
+     * Stamp a request with its correlation id.
+     *
+     * @param request the object passed to {@link Socket#request(Object, Class, long, java.util.concurrent.TimeUnit)}
+     * @param id      the correlation id, unique for the {@link Socket}
+     * @return the object to send, delivered to the set of {@link Encoder}
+     */
+    Object inject(Object request, String id);
+
+    /**
+     * Return the correlation id of a message received, once delivered to the set of {@link Decoder}.
+     *
+     * @param message a decoded message
+     * @return the correlation id, or null if the message isn't a reply
+     */
+    String extract(Object message);
+}
@@ -20,7 +20,10 @@ package org.atmosphere.wasync;
  * one Encoder can be passed to the next Encoder.
  *
  * @param <U> Any object.
- * @param <T> An instance of {@link String}, {@link java.io.InputStream} and {@link java.io.Reader}
+ * @param <T> An instance of {@link String}, byte[], {@link java.io.InputStream} and {@link java.io.Reader}, or a
+ *            {@link CharSequence} or a {@link java.nio.ByteBuffer}, e.g. taken from a pool, which is sent without being
+ *            copied into a new array, or a {@link java.nio.file.Path} or {@link java.nio.channels.FileChannel}, which is
+ *            sent without being read into memory
  *
  * @author Jeanfrancois Arcand
  */
@@ -29,7 +32,9 @@ public interface Encoder<U, T> {
     /**
      * Encode the object of type U into an object of type T.
      * @param s a request's body that has already been encoded or not
-     * @return an encoded object. The list of supported encoded object are {@link String}, {@link java.io.InputStream} and {@link java.io.Reader}
+     * @return an encoded object. The list of supported encoded object are {@link String}, byte[], {@link java.io.InputStream},
+     * {@link java.io.Reader}, {@link CharSequence}, {@link java.nio.ByteBuffer}, {@link java.nio.file.Path} and
+     * {@link java.nio.channels.FileChannel}
      */
     T encode(U s);
 
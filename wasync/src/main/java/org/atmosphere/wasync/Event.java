@@ -66,6 +66,12 @@ public enum Event {
      * This event is fire when the connection has been established. The Transport propagated is the one that worked.
      * This event is only fired once.
      */
-    TRANSPORT
+    TRANSPORT,
+
+    /**
+     * This event is fired when a WebSocket can be written again without queuing messages, once its outbound buffer
+     * went below its low water mark. See {@link Socket#isWritable()}.
+     */
+    WRITABLE
 
 }
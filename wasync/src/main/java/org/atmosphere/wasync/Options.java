@@ -15,7 +15,12 @@
  */
 package org.atmosphere.wasync;
 
+import java.io.File;
+import java.util.Map;
+
 import org.asynchttpclient.AsyncHttpClient;
+import org.atmosphere.wasync.transport.PerMessageDeflate;
+import org.atmosphere.wasync.transport.TransportCache;
 
 /**
  * Configure the underlying WebSocket/HTTP client.
@@ -23,6 +28,25 @@ import org.asynchttpclient.AsyncHttpClient;
  * @author Jeanfrancois Arcand
  */
 public interface Options {
+
+    /**
+     * What to do when a message is written to a WebSocket whose outbound queue is full.
+     * See {@link OptionsBuilder#outboundQueueSize(int)}.
+     */
+    enum OVERFLOW {
+        /**
+         * Block the writing thread until the queue has room. A write from the connection's event loop fails instead
+         */
+        BLOCK,
+        /**
+         * Fail the write with an {@link org.atmosphere.wasync.transport.OutboundQueueFull}
+         */
+        FAIL,
+        /**
+         * Fail the oldest queued write with an {@link org.atmosphere.wasync.transport.OutboundQueueFull}, to make room
+         */
+        DROP_OLDEST }
+
     /**
      * The used {@link Transport}
      *
@@ -30,6 +54,13 @@ public interface Options {
      */
     public Transport transport();
 
+    /**
+     * The {@link TransportFactory}s registered using {@link OptionsBuilder#registerTransport(TransportFactory)}.
+     *
+     * @return the {@link TransportFactory}s, by {@link Request.TRANSPORT}
+     */
+    public Map<Request.TRANSPORT, TransportFactory> transportFactories();
+
     /**
      * Reconnect after a network failure or when the server close the connection.
      *
@@ -95,4 +126,126 @@ public interface Options {
      */
     boolean binary();
 
+    /**
+     * The number of heartbeat intervals, as advertised by the server during the Atmosphere Protocol handshake, without
+     * receiving any bytes before the connection is considered stalled and re-opened. Default is 0 (disabled).
+     *
+     * @return the number of missed heartbeat before reconnecting
+     */
+    int missedHeartbeatsBeforeReconnect();
+
+    /**
+     * The permessage-deflate configuration used by the {@link org.atmosphere.wasync.transport.WebSocketTransport}.
+     *
+     * @return the {@link PerMessageDeflate} configuration, or null if compression is disabled.
+     */
+    PerMessageDeflate perMessageDeflate();
+
+    /**
+     * The maximum size of a WebSocket message, including all its fragments, before the connection is closed with
+     * status 1009.
+     *
+     * @return the maximum size of a WebSocket message, or a value lower or equal to zero if unlimited.
+     */
+    int maxMessageSize();
+
+    /**
+     * The file used by the {@link org.atmosphere.wasync.transport.SSETransport} to persist the id of the last event
+     * received.
+     *
+     * @return the file storing the last event id, or null if it is only kept in memory.
+     */
+    File lastEventIdFile();
+
+    /**
+     * The number of long-polling requests kept waiting on the server, issuing a new one as soon as the response of
+     * a waiting one starts arriving.
+     *
+     * @return the number of pipelined polls, or 0 if a poll is only issued once the previous one completed.
+     */
+    int pipelinedPolls();
+
+    /**
+     * Is the {@link AsyncHttpClient} created by wAsync using the event loop group, timer and allocator shared by every
+     * {@link Socket}.
+     *
+     * @return true if the shared Netty resources are used.
+     */
+    boolean sharedEventLoopGroup();
+
+    /**
+     * The delay, in milliseconds, before starting the next transport when racing the first two transports of a
+     * {@link org.atmosphere.wasync.Request}.
+     *
+     * @return the delay, or -1 if transports are tried one after the other.
+     */
+    long transportRaceStagger();
+
+    /**
+     * The time, in milliseconds, given to each raced transport to complete its handshake when the
+     * {@link Socket} is opened without a timeout.
+     *
+     * @return the time, or -1 to wait until a transport connected or every transport failed.
+     */
+    long transportRaceTimeout();
+
+    /**
+     * The cache of the transports which connected or failed, per origin.
+     *
+     * @return the {@link TransportCache}, or null.
+     */
+    TransportCache transportCache();
+
+    /**
+     * The time, in milliseconds, given to the previous transport to deliver its messages when upgrading to a WebSocket
+     * in the background.
+     *
+     * @return the drain timeout, or -1 if the transport is never upgraded.
+     */
+    long upgradeToWebSocket();
+
+    /**
+     * The time, in milliseconds, a message written to a WebSocket may wait before being flushed with the others.
+     *
+     * @return the linger time, or -1 if every message is flushed.
+     */
+    long writeLinger();
+
+    /**
+     * The number of bytes written to a WebSocket that triggers a flush, when coalescing.
+     *
+     * @return the number of bytes.
+     */
+    int writeBatchSize();
+
+    /**
+     * Send the text messages coalesced as a single frame, each one prefixed by its length, when the size of messages
+     * is tracked.
+     *
+     * @return true if batched.
+     */
+    boolean writeBatchFrame();
+
+    /**
+     * The maximum number of messages queued while a WebSocket isn't writable.
+     *
+     * @return the size of the queue, or -1 if the messages are always written to the connection.
+     */
+    int outboundQueueSize();
+
+    /**
+     * What to do when a message is written while the outbound queue of a WebSocket is full.
+     *
+     * @return the {@link OVERFLOW} policy.
+     */
+    Options.OVERFLOW outboundQueueOverflow();
+
+    /**
+     * The {@link Correlator} of the requests sent using
+     * {@link Socket#request(Object, Class, long, java.util.concurrent.TimeUnit)}.
+     *
+     * @return the {@link Correlator}, or null.
+     */
+    Correlator correlator();
+
 }
@@ -15,9 +15,18 @@
  */
 package org.atmosphere.wasync;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.asynchttpclient.AsyncHttpClient;
+import org.atmosphere.wasync.transport.PerMessageDeflate;
+import org.atmosphere.wasync.transport.TransportCache;
 
 /**
  * Base class for building {@link Options}
@@ -28,6 +37,7 @@ import org.asynchttpclient.AsyncHttpClient;
 public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder<U,T>> {
 
     private Transport transport;
+    private final Map<Request.TRANSPORT, TransportFactory> transportFactories = new EnumMap<Request.TRANSPORT, TransportFactory>(Request.TRANSPORT.class);
     private boolean reconnect = true;
     private int reconnectTimeoutInMilliseconds = 0;
     private int reconnectAttempts = 0;
@@ -37,6 +47,22 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
     private int requestTimeout = -1;
     protected final Class<T> derived;
     private boolean binary;
+    private int missedHeartbeatsBeforeReconnect = 0;
+    private PerMessageDeflate perMessageDeflate;
+    private int maxMessageSize = 10 * 1024 * 1024;
+    private File lastEventIdFile;
+    private int pipelinedPolls = 0;
+    private boolean sharedEventLoopGroup = true;
+    private long transportRaceStagger = -1;
+    private long transportRaceTimeout = -1;
+    private TransportCache transportCache;
+    private long upgradeToWebSocket = -1;
+    private long writeLinger = -1;
+    private int writeBatchSize = 65536;
+    private boolean writeBatchFrame;
+    private int outboundQueueSize = -1;
+    private Options.OVERFLOW outboundQueueOverflow = Options.OVERFLOW.FAIL;
+    private Correlator correlator;
 
     protected OptionsBuilder(Class<T> derived) {
         this.derived = derived;
@@ -54,13 +80,47 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
 
     /**
      * Register a new {@link Transport} implementation. Register a transport only if you are planning to use
-     * a different transport than the supported one.
+     * a different transport than the supported one. The transport is used, in place of the built-in transport of the
+     * same {@link Transport#name()}, by every {@link Socket} created with these options, and the {@link Function}s
+     * of the sockets are registered to it.
      *
      * @param transport {@link Transport}
      * @return this
+     * @deprecated use {@link #registerTransport(TransportFactory)}, which creates a transport per {@link Socket}
      */
-    public T registerTransport(Transport transport) {
+    @Deprecated
+    public T registerTransport(final Transport transport) {
         this.transport = transport;
+        return registerTransport(new TransportFactory() {
+            private final Set<FunctionWrapper> registered = Collections.newSetFromMap(new IdentityHashMap<FunctionWrapper, Boolean>());
+
+            @Override
+            public Request.TRANSPORT name() {
+                return transport.name();
+            }
+
+            @Override
+            public synchronized Transport newTransport(org.asynchttpclient.RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
+                for (FunctionWrapper f : functions) {
+                    if (registered.add(f)) {
+                        transport.registerF(f);
+                    }
+                }
+                return transport;
+            }
+        });
+    }
+
+    /**
+     * Register a {@link TransportFactory}, creating the {@link Transport} used in place of the built-in transport of
+     * the same {@link Request.TRANSPORT}. A factory registered here takes precedence over the factories discovered
+     * using {@link java.util.ServiceLoader}.
+     *
+     * @param factory a {@link TransportFactory}
+     * @return this
+     */
+    public T registerTransport(TransportFactory factory) {
+        transportFactories.put(factory.name(), factory);
         return derived.cast(this);
     }
 
@@ -105,6 +165,221 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
         return derived.cast(this);
     }
 
+    /**
+     * When the Atmosphere Protocol is used, the server advertises its heartbeat interval during the handshake. If no message
+     * or heartbeat is received within <tt>missedHeartbeats</tt> times that interval, the connection is considered stalled
+     * and the transport will reconnect. Requires {@link #reconnect(boolean)} to be enabled. Default is 0 (disabled).
+     *
+     * @param missedHeartbeats the number of heartbeat intervals to wait before reconnecting
+     * @return this
+     */
+    public T missedHeartbeatsBeforeReconnect(int missedHeartbeats) {
+        this.missedHeartbeatsBeforeReconnect = missedHeartbeats;
+        return derived.cast(this);
+    }
+
+    /**
+     * Negotiate the permessage-deflate WebSocket extension (RFC 7692) with the server. Compression is only applied
+     * to {@link AsyncHttpClient} created by the library. Default is null (disabled).
+     *
+     * @param perMessageDeflate the {@link PerMessageDeflate} configuration
+     * @return this
+     */
+    public T perMessageDeflate(PerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+        return derived.cast(this);
+    }
+
+    /**
+     * The maximum size of a WebSocket message, in bytes. Fragmented messages are reassembled up to that size; if a
+     * message exceeds it, the connection is closed with status 1009 (message too big). Default is 10 MB, a value lower
+     * or equal to zero disables the limit. If you supply your own {@link org.asynchttpclient.AsyncHttpClient}, disable
+     * its aggregation of the fragments, else it buffers them up to its own limit first.
+     *
+     * @param maxMessageSize the maximum size of a message
+     * @return this
+     */
+    public T maxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        return derived.cast(this);
+    }
+
+    /**
+     * Persist the id of the last Server-Sent Event received in a file, so a new {@link Socket} using the same file,
+     * for example after the process has been restarted, resumes the stream using the <tt>Last-Event-ID</tt> header.
+     * Default is null (the id is only kept in memory).
+     *
+     * @param file the file storing the last event id
+     * @return this
+     */
+    public T lastEventIdFile(File file) {
+        this.lastEventIdFile = file;
+        return derived.cast(this);
+    }
+
+    /**
+     * Pipeline long-polling requests: the number of polls kept waiting on the server. As soon as the response of a
+     * waiting poll starts arriving, a new poll is issued, so messages published while a response is in flight aren't
+     * delayed by an extra round trip. All polls share the same tracking id, so the server delivers a cached message
+     * only once. A value of 1 is recommended with Atmosphere, which only keeps the most recent poll of a tracking id.
+     * Requires {@link #reconnect(boolean)} to be enabled. Default is 0 (a poll is issued once the previous completed).
+     *
+     * @param pipelinedPolls the number of polls kept waiting on the server
+     * @return this
+     */
+    public T pipelinedPolls(int pipelinedPolls) {
+        this.pipelinedPolls = pipelinedPolls;
+        return derived.cast(this);
+    }
+
+    /**
+     * Create the {@link AsyncHttpClient} using the Netty resources shared by every {@link Socket}: a single event loop
+     * group sized to the number of cores, using the native epoll transport when available, a single timer and the
+     * pooled allocator. See {@link org.atmosphere.wasync.util.NettyResources}. When disabled, each {@link AsyncHttpClient}
+     * created by wAsync starts its own threads. Ignored if {@link #runtime(AsyncHttpClient)} is set. Default is true.
+     *
+     * @param sharedEventLoopGroup false to give each {@link AsyncHttpClient} its own threads
+     * @return this
+     */
+    public T sharedEventLoopGroup(boolean sharedEventLoopGroup) {
+        this.sharedEventLoopGroup = sharedEventLoopGroup;
+        return derived.cast(this);
+    }
+
+    /**
+     * Race the first two transports of {@link org.atmosphere.wasync.Request#transport()}, happy eyeballs style: the
+     * preferred transport is started, the next one is started once the stagger has elapsed or as soon as the preferred
+     * one failed. The first transport to complete its handshake is used and the other one is aborted. When the socket
+     * is opened without a timeout, the race lasts {@link #transportRaceTimeout(long)}. Set to -1 to try the transports
+     * one after the other. Default is -1.
+     *
+     * @param transportRaceStagger the delay, in milliseconds, before starting the next transport, or -1
+     * @return this
+     */
+    public T transportRaceStagger(long transportRaceStagger) {
+        this.transportRaceStagger = transportRaceStagger;
+        return derived.cast(this);
+    }
+
+    /**
+     * When the socket is opened without a timeout, the time given to each transport raced by
+     * {@link #transportRaceStagger(long)} to complete its handshake. A transport aborted once this time has elapsed
+     * isn't recorded as failed by the {@link #transportCache(TransportCache)}. Default is -1, the race lasts until a
+     * transport connected or both failed.
+     *
+     * @param transportRaceTimeout the time, in milliseconds, or -1
+     * @return this
+     */
+    public T transportRaceTimeout(long transportRaceTimeout) {
+        this.transportRaceTimeout = transportRaceTimeout;
+        return derived.cast(this);
+    }
+
+    /**
+     * Remember which transports connected or failed, per origin. Share the same {@link TransportCache} between the
+     * {@link Socket}s so a {@link Socket} starts with the first transport not known to fail, instead of repeating
+     * the handshake of a transport the server or a proxy rejects. Default is null.
+     *
+     * @param transportCache a {@link TransportCache}
+     * @return this
+     */
+    public T transportCache(TransportCache transportCache) {
+        this.transportCache = transportCache;
+        return derived.cast(this);
+    }
+
+    /**
+     * Once connected using long-polling, streaming or server-sent events, upgrade to a WebSocket in the background.
+     * The WebSocket reuses the tracking id of the connection, and is used once the previous transport delivered the
+     * messages in flight: when its response completes, or at the latest once the drain timeout has elapsed. The messages
+     * received by the WebSocket meanwhile are dispatched afterward, in order. If the upgrade fails, the previous
+     * transport is kept. Set to -1 to never upgrade. Default is -1.
+     *
+     * @param drainTimeout the time, in milliseconds, given to the previous transport to deliver its messages, or -1
+     * @return this
+     */
+    public T upgradeToWebSocket(long drainTimeout) {
+        this.upgradeToWebSocket = drainTimeout;
+        return derived.cast(this);
+    }
+
+    /**
+     * Coalesce the messages written to a WebSocket: they are flushed at once when the linger time has elapsed, or
+     * when {@link #writeBatchSize(int)} is reached, trading latency for fewer system calls under load. With 0, the
+     * messages written meanwhile are flushed as soon as the event loop is idle. Set to -1 to flush every message.
+     * Default is -1.
+     *
+     * @param linger the time, in milliseconds, a message may wait before being flushed, or -1
+     * @return this
+     */
+    public T writeLinger(long linger) {
+        this.writeLinger = linger;
+        return derived.cast(this);
+    }
+
+    /**
+     * When coalescing the messages written to a WebSocket, the number of bytes written that triggers a flush,
+     * without waiting for the {@link #writeLinger(long)} time. Default is 65536.
+     *
+     * @param writeBatchSize the number of bytes
+     * @return this
+     */
+    public T writeBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+        return derived.cast(this);
+    }
+
+    /**
+     * When coalescing the messages written to a WebSocket using an {@link org.atmosphere.wasync.impl.AtmosphereRequest}
+     * tracking the size of messages, send the text messages flushed together as a single frame. Each message is
+     * prefixed by its length and the delimiter, for the server to split them. Default is false.
+     *
+     * @param writeBatchFrame true to batch the text messages in a single frame
+     * @return this
+     */
+    public T writeBatchFrame(boolean writeBatchFrame) {
+        this.writeBatchFrame = writeBatchFrame;
+        return derived.cast(this);
+    }
+
+    /**
+     * Bound the messages written to a WebSocket while its outbound buffer is full. A message is written to the connection
+     * only while it is writable, according to the water marks of the channel, and queued otherwise. Once the queue
+     * holds this many messages, the {@link #outboundQueueOverflow(Options.OVERFLOW)} policy applies. Set to -1 to
+     * always write to the connection. Default is -1.
+     *
+     * @param outboundQueueSize the maximum number of messages queued, or -1
+     * @return this
+     */
+    public T outboundQueueSize(int outboundQueueSize) {
+        this.outboundQueueSize = outboundQueueSize;
+        return derived.cast(this);
+    }
+
+    /**
+     * What to do when a message is written while the outbound queue of a WebSocket is full. Default is
+     * {@link Options.OVERFLOW#FAIL}.
+     *
+     * @param overflow the {@link Options.OVERFLOW} policy
+     * @return this
+     */
+    public T outboundQueueOverflow(Options.OVERFLOW overflow) {
+        this.outboundQueueOverflow = overflow;
+        return derived.cast(this);
+    }
+
+    /**
+     * Correlate the requests sent using {@link Socket#request(Object, Class, long, java.util.concurrent.TimeUnit)}
+     * with their replies. The replies are delivered to the set of {@link Function} as well. Default is null.
+     *
+     * @param correlator a {@link Correlator}
+     * @return this
+     */
+    public T correlator(Correlator correlator) {
+        this.correlator = correlator;
+        return derived.cast(this);
+    }
+
     /**
      * For streaming and long-polling, the server may not send the headers so the client never knows
      * if the connection succeeded or not. By default the library will wait for 2500 milliseconds before
@@ -171,6 +446,14 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
     public Transport transport() {
         return transport;
     }
+
+    /**
+     * The registered {@link TransportFactory}s.
+     * @return the {@link TransportFactory}s, by {@link Request.TRANSPORT}
+     */
+    public Map<Request.TRANSPORT, TransportFactory> transportFactories() {
+        return transportFactories;
+    }
     /**
      * Reconnect after a network failure or when the server close the connection.
      * @return reconnect
@@ -243,4 +526,131 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
         return binary;
     }
 
+    /**
+     * The number of heartbeat intervals without receiving any bytes before the connection is re-opened.
+     * @return the number of missed heartbeat before reconnecting. Default is 0 (disabled)
+     */
+    public int missedHeartbeatsBeforeReconnect() {
+        return missedHeartbeatsBeforeReconnect;
+    }
+
+    /**
+     * The permessage-deflate configuration.
+     * @return the {@link PerMessageDeflate} configuration, or null if compression is disabled.
+     */
+    public PerMessageDeflate perMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /**
+     * The maximum size of a WebSocket message.
+     * @return the maximum size of a WebSocket message. Default is 10 MB
+     */
+    public int maxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * The file storing the id of the last Server-Sent Event received.
+     * @return the file storing the id of the last Server-Sent Event received, or null
+     */
+    public File lastEventIdFile() {
+        return lastEventIdFile;
+    }
+
+    /**
+     * The number of long-polling requests kept waiting on the server.
+     * @return the number of long-polling requests kept waiting on the server. Default is 0 (disabled)
+     */
+    public int pipelinedPolls() {
+        return pipelinedPolls;
+    }
+
+    /**
+     * Is the {@link AsyncHttpClient} created using the shared Netty resources.
+     * @return true if the {@link AsyncHttpClient} is created using the shared Netty resources. Default is true
+     */
+    public boolean sharedEventLoopGroup() {
+        return sharedEventLoopGroup;
+    }
+
+    /**
+     * The delay, in milliseconds, before racing the next transport.
+     * @return the delay before racing the next transport, -1 if transports are tried one after the other. Default is -1
+     */
+    public long transportRaceStagger() {
+        return transportRaceStagger;
+    }
+
+    /**
+     * The time given to each raced transport to complete its handshake, when the socket is opened without a timeout.
+     * @return the time, in milliseconds, or -1 if the race lasts until a transport connected or both failed. Default is -1
+     */
+    public long transportRaceTimeout() {
+        return transportRaceTimeout;
+    }
+
+    /**
+     * The {@link TransportCache}
+     * @return the {@link TransportCache}, or null
+     */
+    public TransportCache transportCache() {
+        return transportCache;
+    }
+
+    /**
+     * The time, in milliseconds, given to the previous transport to deliver its messages when upgrading to a WebSocket.
+     * @return the drain timeout, -1 if the transport is never upgraded. Default is -1
+     */
+    public long upgradeToWebSocket() {
+        return upgradeToWebSocket;
+    }
+
+    /**
+     * The time, in milliseconds, a message written to a WebSocket may wait before being flushed.
+     * @return the linger time, -1 if every message is flushed. Default is -1
+     */
+    public long writeLinger() {
+        return writeLinger;
+    }
+
+    /**
+     * The number of bytes written to a WebSocket that triggers a flush, when coalescing.
+     * @return the number of bytes. Default is 65536
+     */
+    public int writeBatchSize() {
+        return writeBatchSize;
+    }
+
+    /**
+     * Send the coalesced text messages as a single frame, prefixed by their length.
+     * @return true if batched. Default is false
+     */
+    public boolean writeBatchFrame() {
+        return writeBatchFrame;
+    }
+
+    /**
+     * The maximum number of messages queued while a WebSocket isn't writable.
+     * @return the size of the queue, -1 if the messages are always written. Default is -1
+     */
+    public int outboundQueueSize() {
+        return outboundQueueSize;
+    }
+
+    /**
+     * What to do when a message is written while the outbound queue of a WebSocket is full.
+     * @return the {@link Options.OVERFLOW} policy. Default is {@link Options.OVERFLOW#FAIL}
+     */
+    public Options.OVERFLOW outboundQueueOverflow() {
+        return outboundQueueOverflow;
+    }
+
+    /**
+     * @return the {@link Correlator}, or null
+     */
+    public Correlator correlator() {
+        return correlator;
+    }
+
 }
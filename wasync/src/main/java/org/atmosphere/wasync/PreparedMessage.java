@@ -0,0 +1,50 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A message encoded once, using the {@link Encoder}s of a {@link Request}, to be sent to many {@link Socket}s. Created
+ * using {@link Client#prepare(Request, Object)}:
+ * <blockquote><pre>
+     PreparedMessage message = client.prepare(request, new POJO("hello"));
+     message.fire(sockets);
+ * </pre></blockquote>
+ * With {@link Request.TRANSPORT#WEBSOCKET}, the message's bytes are written once into a buffer shared by every
+ * {@link Socket}, instead of being copied for each of them. The {@link Socket}s are expected to use the same
+ * {@link Encoder}s as the {@link Request}.
+ */
+public interface PreparedMessage {
+
+    /**
+     * Send the message to {@link Socket}s, like {@link Socket#fireAsync(Object)}. The buffer holding the message is
+     * released once written to every {@link Socket}. A {@link PreparedMessage} can be fired many times.
+     *
+     * @param sockets the {@link Socket}s
+     * @return a {@link CompletionStage} completed once the message has been written to every {@link Socket}, or
+     * completed exceptionally if it couldn't be written to one of them
+     */
+    CompletionStage<Void> fire(Collection<? extends Socket> sockets);
+
+    /**
+     * The encoded message.
+     *
+     * @return a {@link CharSequence}, byte[] or {@link java.nio.ByteBuffer}
+     */
+    Object encoded();
+}
@@ -29,7 +29,7 @@ import io.netty.handler.codec.http.HttpHeaders;
 public interface Request {
 
     public enum METHOD {GET, POST, TRACE, PUT, DELETE, OPTIONS}
-    public enum TRANSPORT {WEBSOCKET, SSE, STREAMING, LONG_POLLING}
+    public enum TRANSPORT {WEBSOCKET, SSE, STREAMING, LONG_POLLING, HTTP2, LOOPBACK}
 
     /**
      * The list of transports to try
@@ -16,6 +16,7 @@
 package org.atmosphere.wasync;
 
 import java.io.IOException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -99,12 +100,60 @@ public interface Socket {
      * Send data to the remote Server. The object will first be delivered to the set of {@link Encoder}, and then send to the server.
      * The server's response will be delivered to the set of defined {@link Function} using the opened {@link Transport}, e.g for
      * {@link Request.TRANSPORT#WEBSOCKET}, the same connection will be re-used and, for others transports, the suspended connection.
+     * <p/>
+     * For others transports, the data is POSTed without blocking: the returned {@link Future} is done once the response
+     * is received, and the response's body is delivered to the set of defined {@link Function}.
+     * <p/>
+     * A {@link java.nio.file.Path} or a {@link java.nio.channels.FileChannel} is sent without being read into memory
+     * at once: as {@link org.atmosphere.wasync.transport.WebSocketTransport#FRAGMENT_SIZE} bytes binary fragments for
+     * {@link Request.TRANSPORT#WEBSOCKET}, or as the request's body, using sendfile when available, for others transports.
      * @param data object to send
      * @return a {@link Future}
      * @throws IOException
      */
     Future fire(Object data) throws IOException;
 
+    /**
+     * Send data to the remote Server, like {@link #fire(Object)}, without blocking. The returned {@link CompletionStage}
+     * completes once the data has been flushed, for {@link Request.TRANSPORT#WEBSOCKET}, or once the response has been
+     * received and delivered to the set of defined {@link Function}, for others transports. It completes exceptionally
+     * if the data can't be written.
+     * @param data object to send
+     * @return a {@link CompletionStage}
+     */
+    CompletionStage<Void> fireAsync(Object data);
+
+    /**
+     * Write data to the remote Server, like {@link #fireAsync(Object)}, without flushing it. For
+     * {@link Request.TRANSPORT#WEBSOCKET}, the data is sent by the next {@link #flush()} or {@link #fire(Object)}, so a
+     * burst of messages can be sent at once. Others transports send the data like {@link #fireAsync(Object)}.
+     * @param data object to send
+     * @return a {@link CompletionStage} completed once the data has been flushed
+     */
+    CompletionStage<Void> write(Object data);
+
+    /**
+     * Flush the data written using {@link #write(Object)}.
+     * @return this
+     */
+    Socket flush();
+
+    /**
+     * Send a request to the remote Server, like {@link #fireAsync(Object)}, and wait for its reply without blocking.
+     * The request is stamped with a correlation id by the {@link Correlator} set using
+     * {@link OptionsBuilder#correlator(Correlator)}, and the returned {@link CompletionStage} completes with the first
+     * message of type R carrying the same id, once delivered to the set of {@link Decoder}. Many requests can be
+     * pending at once.
+     * @param data    the request
+     * @param type    the type of the reply
+     * @param timeout the time to wait for the reply
+     * @param unit    the unit of the timeout
+     * @return a {@link CompletionStage} completed with the reply, or exceptionally with a
+     * {@link java.util.concurrent.TimeoutException} if no reply has been received in time, or if the request can't
+     * be written
+     */
+    <R> CompletionStage<R> request(Object data, Class<R> type, long timeout, TimeUnit unit);
+
     /**
      * Associate a {@link Function} with the Socket. When a response is received, the library will try to associated
      * the decoded message (decoded by {@link Decoder}) to the defined type of the {@link Function}
@@ -159,4 +208,13 @@ public interface Socket {
      *  Return the {@link STATUS} of this Socket.
      */
     STATUS status();
+
+    /**
+     * Return true if a message can be written without being queued. With {@link Request.TRANSPORT#WEBSOCKET}, false
+     * when the connection's outbound buffer is above its high water mark, or while messages are queued, see
+     * {@link OptionsBuilder#outboundQueueSize(int)}. {@link Event#WRITABLE} is fired once it can be written again.
+     *
+     * @return true if writable
+     */
+    boolean isWritable();
 }
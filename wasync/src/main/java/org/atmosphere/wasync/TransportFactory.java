@@ -0,0 +1,50 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.List;
+
+/**
+ * Create the {@link Transport} used by a {@link Socket} for a {@link Request.TRANSPORT}, replacing the built-in one.
+ * A factory is registered using {@link OptionsBuilder#registerTransport(TransportFactory)}, or discovered using
+ * {@link java.util.ServiceLoader} by listing its class in
+ * <tt>META-INF/services/org.atmosphere.wasync.TransportFactory</tt>. A factory registered with the {@link Options}
+ * takes precedence.
+ * <p/>
+ * The {@link Socket} connects a {@link Transport} implementing
+ * {@link org.atmosphere.wasync.transport.DirectTransport} by invoking it, else the {@link Transport} must be an AHC
+ * {@link org.asynchttpclient.AsyncHandler}, executed like the built-in transports.
+ */
+public interface TransportFactory {
+
+    /**
+     * The {@link Request.TRANSPORT} of the {@link Transport}s created.
+     *
+     * @return the {@link Request.TRANSPORT}
+     */
+    Request.TRANSPORT name();
+
+    /**
+     * Create a {@link Transport}.
+     *
+     * @param requestBuilder the AHC request used to connect
+     * @param options        the {@link Options}
+     * @param request        the {@link Request}
+     * @param functions      the {@link Function}s of the {@link Socket}
+     * @return a {@link Transport}
+     */
+    Transport newTransport(org.asynchttpclient.RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions);
+}
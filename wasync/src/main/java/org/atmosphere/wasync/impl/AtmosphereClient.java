@@ -17,6 +17,8 @@ package org.atmosphere.wasync.impl;
 
 import org.atmosphere.wasync.Client;
 import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.PreparedMessage;
+import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.impl.AtmosphereRequest.AtmosphereRequestBuilder;
 
@@ -81,4 +83,12 @@ public class AtmosphereClient implements Client<DefaultOptions, DefaultOptionsBu
         return AtmosphereRequestBuilder.class.cast(b.resolver(FunctionResolver.DEFAULT));
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PreparedMessage prepare(Request request, Object data) {
+        return new DefaultPreparedMessage(request, data);
+    }
 }
@@ -94,6 +94,15 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
         return builder.paddingSize;
     }
 
+    /**
+     * The heartbeat interval, in milliseconds, advertised by the server during the Atmosphere Protocol handshake.
+     *
+     * @return the heartbeat interval, or -1 if the handshake hasn't been received or no interval was advertised.
+     */
+    public long getHeartbeatInterval() {
+        return builder.heartbeatInterval;
+    }
+
     /**
      * A builder for {@link AtmosphereRequest}. This builder configure the Atmosphere Protocol on the request object.
      */
@@ -104,6 +113,7 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
         private String trackMessageLengthDelimiter = "|";
         private int paddingSize = 4098;
         private boolean enableProtocol = true;
+        private volatile long heartbeatInterval = -1;
         private final BDecoder bDecoder = new BDecoder();
         private final SDecoder sDecoder = new SDecoder();
 
@@ -130,6 +140,9 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
                 List<String> l = new ArrayList<String>();
                 if (t.equals(TRANSPORT.LONG_POLLING)) {
                     l.add("long-polling");
+                } else if (t.equals(TRANSPORT.HTTP2)) {
+                    // A streaming request, over an HTTP/2 stream
+                    l.add("streaming");
                 } else {
                     l.add(t.name().toLowerCase());
                 }
@@ -264,13 +277,28 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
             l.add(proto[pos]);
             queryString.put("X-Atmosphere-tracking-id", l);
 
+            // uuid|heartbeatInterval|heartbeatPadding
+            if (proto.length > pos + 1) {
+                heartbeatInterval = parseHeartbeatInterval(proto[pos + 1]);
+            }
+
             String heartbeatChar = "X";
-            if (proto.length == 3) {
-                heartbeatChar = proto[2];
+            if (proto.length > pos + 2) {
+                heartbeatChar = proto[pos + 2];
             }
             _addDecoder(2,new PaddingAndHeartbeatDecoder(paddingSize, heartbeatChar));
         }
 
+        private long parseHeartbeatInterval(String s) {
+            try {
+                long interval = Long.parseLong(s.trim());
+                return interval > 0 ? interval : -1;
+            } catch (NumberFormatException ex) {
+                logger.debug("Invalid heartbeat interval {}", s);
+                return -1;
+            }
+        }
+
         private final class SDecoder implements Decoder<String, Decoder.Decoded<String>> {
 
             private AtomicBoolean protocolReceived = new AtomicBoolean();
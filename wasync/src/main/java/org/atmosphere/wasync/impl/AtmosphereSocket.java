@@ -21,13 +21,16 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
 import org.atmosphere.wasync.Function;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.transport.TransportNotSupported;
 import org.atmosphere.wasync.util.FluentStringsMap;
+import org.atmosphere.wasync.util.NettyResources;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +67,11 @@ public class AtmosphereSocket extends DefaultSocket {
                     .setHeaders(request.headers())
                     .setQueryParams(f);
             try {
-                options.runtime().prepareRequest(r.build()).execute().get();
+                ListenableFuture<Response> closed = options.runtime().prepareRequest(r.build()).execute();
+                // Invoked by a function, the event loop can't wait for the response it has to read.
+                if (!NettyResources.inEventLoop(options.runtime().getConfig().getEventLoopGroup())) {
+                    closed.get();
+                }
             } catch (Exception e) {
                 logger.debug("Was unable to send the close request {}", uuid);
                 logger.trace("", e);
@@ -80,14 +87,10 @@ public class AtmosphereSocket extends DefaultSocket {
         functions.add(new FunctionWrapper("", new Function<TransportNotSupported>() {
             @Override
             public void on(TransportNotSupported transportNotSupported) {
-                request.transport().remove(0);
+                transportFailed(request.transport().remove(0));
                 if (request.transport().size() > 0) {
                     try {
-                        if (request.queryString().get("X-Atmosphere-Transport") != null) {
-                            Request.TRANSPORT rt = request.transport().get(0);
-                            String t = rt == Request.TRANSPORT.LONG_POLLING ? "long-polling" : rt.name();
-                            request.queryString().put("X-Atmosphere-Transport", Arrays.asList(new String[]{t}));
-                        }
+                        transportSelected(request.transport().get(0));
                         open(request, timeout, tu);
                     } catch (IOException e) {
                         logger.error("", e);
@@ -99,6 +102,31 @@ public class AtmosphereSocket extends DefaultSocket {
         }));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void configureTransport(Request.TRANSPORT t, FluentStringsMap queryString) {
+        if (queryString.containsKey("X-Atmosphere-Transport")) {
+            queryString.replaceWith("X-Atmosphere-Transport", transport(t));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void transportSelected(Request.TRANSPORT t) {
+        if (request.queryString().get("X-Atmosphere-Transport") != null) {
+            request.queryString().put("X-Atmosphere-Transport", Arrays.asList(new String[]{transport(t)}));
+        }
+    }
+
+    static String transport(Request.TRANSPORT t) {
+        return t == Request.TRANSPORT.LONG_POLLING ? "long-polling"
+                : t == Request.TRANSPORT.HTTP2 ? "streaming" : t.name();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -111,6 +139,8 @@ public class AtmosphereSocket extends DefaultSocket {
      */
     @Override
     public void close() {
+        abortUpgrade();
+
         if(request != null) {
             doCloseRequest();
         }
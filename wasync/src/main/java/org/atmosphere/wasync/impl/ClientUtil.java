@@ -20,6 +20,7 @@ import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.util.NettyResources;
 
 /**
  * Util class for building {@link AsyncHttpClient}
@@ -30,14 +31,30 @@ public class ClientUtil {
     private static final String WASYNC_USER_AGENT = "wAsync/2.0";
 
     public final static AsyncHttpClient createDefaultAsyncHttpClient(Options o) {
-		return createDefaultAsyncHttpClient(o.requestTimeoutInSeconds());
+		DefaultAsyncHttpClientConfig.Builder b = defaultConfig(o.requestTimeoutInSeconds(), o.sharedEventLoopGroup());
+		if (o.perMessageDeflate() != null) {
+			o.perMessageDeflate().configure(b);
+		}
+		return new DefaultAsyncHttpClient(b.build());
 	}
 
 	public final static AsyncHttpClient createDefaultAsyncHttpClient(int requestTimeoutInSeconds) {
+		return new DefaultAsyncHttpClient(defaultConfig(requestTimeoutInSeconds, true).build());
+	}
+
+	private static DefaultAsyncHttpClientConfig.Builder defaultConfig(int requestTimeoutInSeconds, boolean sharedEventLoopGroup) {
 		DefaultAsyncHttpClientConfig.Builder b = new DefaultAsyncHttpClientConfig.Builder();
 		b.setFollowRedirect(true).setTcpNoDelay(true).setKeepAlive(true).setConnectTimeout(-1)
-				.setReadTimeout(requestTimeoutInSeconds == -1 ? requestTimeoutInSeconds : requestTimeoutInSeconds * 1000).setUserAgent(WASYNC_USER_AGENT);
-		return new DefaultAsyncHttpClient(b.build());
+				.setReadTimeout(requestTimeoutInSeconds == -1 ? requestTimeoutInSeconds : requestTimeoutInSeconds * 1000).setUserAgent(WASYNC_USER_AGENT)
+				// The WebSocketTransport reassembles the fragments, up to Options.maxMessageSize()
+				.setAggregateWebSocketFrameFragments(false);
+		if (sharedEventLoopGroup) {
+			// Closing the AsyncHttpClient doesn't release resources it didn't create
+			b.setEventLoopGroup(NettyResources.eventLoopGroup())
+					.setNettyTimer(NettyResources.timer())
+					.setAllocator(NettyResources.allocator());
+		}
+		return b;
 	}
        
     public static Socket create(Options options) {
@@ -18,6 +18,8 @@ package org.atmosphere.wasync.impl;
 import org.atmosphere.wasync.Client;
 import org.atmosphere.wasync.FunctionResolver;
 import org.atmosphere.wasync.OptionsBuilder;
+import org.atmosphere.wasync.PreparedMessage;
+import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.RequestBuilder;
 import org.atmosphere.wasync.Socket;
 
@@ -79,4 +81,12 @@ public class DefaultClient implements Client<DefaultOptions, OptionsBuilder,Requ
         }
         return b.resolver(FunctionResolver.DEFAULT);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PreparedMessage prepare(Request request, Object data) {
+        return new DefaultPreparedMessage(request, data);
+    }
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.atmosphere.wasync.Future;
 import org.atmosphere.wasync.Socket;
@@ -33,12 +34,12 @@ import org.atmosphere.wasync.Socket;
 public class DefaultFuture implements Future {
 
     private final DefaultSocket socket;
-    private CountDownLatch latch = new CountDownLatch(1);
+    private volatile CountDownLatch latch = new CountDownLatch(1);
     private final AtomicBoolean done = new AtomicBoolean(false);
-    private long time = -1;
-    private TimeUnit tu;
-    private TimeoutException te = null;
-    private IOException ioException;
+    private volatile long time = -1;
+    private volatile TimeUnit tu;
+    private volatile TimeoutException te = null;
+    private final AtomicReference<IOException> ioException = new AtomicReference<IOException>();
 
     public DefaultFuture(DefaultSocket socket) {
         this.socket = socket;
@@ -103,12 +104,10 @@ public class DefaultFuture implements Future {
     @Override
     public Future finishOrThrowException() throws IOException {
         done();
-        try {
-            if (ioException != null) {
-                throw ioException;
-            }
-        } finally {
-            ioException = null;
+        // Thrown once, to a single caller
+        IOException e = ioException.getAndSet(null);
+        if (e != null) {
+            throw e;
         }
         return this;
     }
@@ -118,7 +117,7 @@ public class DefaultFuture implements Future {
      */
     @Override
     public Future ioException(IOException t) {
-        ioException = t;
+        ioException.set(t);
         done();
         return this;
     }
@@ -134,6 +133,7 @@ public class DefaultFuture implements Future {
     @Override
     public Socket get() throws InterruptedException, ExecutionException {
         latch.await();
+        failed();
         return socket;
     }
 
@@ -142,19 +142,37 @@ public class DefaultFuture implements Future {
      */
     @Override
     public Socket get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        awaitDone(timeout, unit);
+        failed();
+        return socket;
+    }
+
+    /**
+     * Wait like {@link #get(long, TimeUnit)}, without throwing the exception set using {@link #ioException(IOException)},
+     * which is left to {@link #finishOrThrowException()}.
+     */
+    void awaitDone(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
         time = timeout;
         tu = unit;
         try {
-            if (!latch.await(timeout, unit) || te != null) {
-                throw te == null ? new TimeoutException() : te;
+            boolean released = latch.await(timeout, unit);
+            TimeoutException e = te;
+            if (!released || e != null) {
+                throw e == null ? new TimeoutException() : e;
             }
         } finally {
             te = null;
         }
-        return socket;
     }
 
-    protected Socket socket() {
+    private void failed() throws ExecutionException {
+        IOException e = ioException.get();
+        if (e != null) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    protected DefaultSocket socket() {
         return socket;
     }
 
@@ -163,8 +181,6 @@ public class DefaultFuture implements Future {
      */
     @Override
     public Future fire(Object data) throws IOException {
-        reset();
-        socket.internalSocket().write(socket.request(), data);
-        return this;
+        return socket.internalSocket().write(socket.request(), data);
     }
 }
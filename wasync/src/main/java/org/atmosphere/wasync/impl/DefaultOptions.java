@@ -15,10 +15,18 @@
  */
 package org.atmosphere.wasync.impl;
 
+import java.io.File;
+import java.util.Map;
+
 import org.asynchttpclient.AsyncHttpClient;
+import org.atmosphere.wasync.Correlator;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.OptionsBuilder;
+import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.TransportFactory;
+import org.atmosphere.wasync.transport.PerMessageDeflate;
+import org.atmosphere.wasync.transport.TransportCache;
 
 /**
  * Default implementation of the {@link Options}
@@ -40,6 +48,14 @@ public class DefaultOptions implements Options {
     public Transport transport() {
         return b.transport();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Request.TRANSPORT, TransportFactory> transportFactories() {
+        return b.transportFactories();
+    }
     
     /**
      * {@inheritDoc}
@@ -107,4 +123,132 @@ public class DefaultOptions implements Options {
     public boolean binary() {
         return b.binary();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int missedHeartbeatsBeforeReconnect() {
+        return b.missedHeartbeatsBeforeReconnect();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PerMessageDeflate perMessageDeflate() {
+        return b.perMessageDeflate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int maxMessageSize() {
+        return b.maxMessageSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File lastEventIdFile() {
+        return b.lastEventIdFile();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int pipelinedPolls() {
+        return b.pipelinedPolls();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sharedEventLoopGroup() {
+        return b.sharedEventLoopGroup();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long transportRaceStagger() {
+        return b.transportRaceStagger();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long transportRaceTimeout() {
+        return b.transportRaceTimeout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TransportCache transportCache() {
+        return b.transportCache();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long upgradeToWebSocket() {
+        return b.upgradeToWebSocket();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long writeLinger() {
+        return b.writeLinger();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int writeBatchSize() {
+        return b.writeBatchSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean writeBatchFrame() {
+        return b.writeBatchFrame();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int outboundQueueSize() {
+        return b.outboundQueueSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Options.OVERFLOW outboundQueueOverflow() {
+        return b.outboundQueueOverflow();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Correlator correlator() {
+        return b.correlator();
+    }
 }
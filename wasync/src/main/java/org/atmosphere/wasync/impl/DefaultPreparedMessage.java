@@ -0,0 +1,96 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.atmosphere.wasync.PreparedMessage;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.util.NettyResources;
+
+/**
+ * The default implementation of the {@link PreparedMessage}. Text messages are encoded using UTF-8 into a pooled
+ * buffer, binary messages are wrapped. Every {@link DefaultSocket} writes a retained duplicate of the buffer.
+ */
+public class DefaultPreparedMessage implements PreparedMessage {
+
+    private final Object encoded;
+    private final Object data;
+
+    public DefaultPreparedMessage(Request request, Object data) {
+        this.data = data;
+        encoded = new EncoderChain(request.encoders()).encode(data);
+        if (!(encoded instanceof CharSequence) && !(encoded instanceof byte[]) && !(encoded instanceof ByteBuffer)) {
+            throw new IllegalStateException("No Encoder for " + data);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Void> fire(Collection<? extends Socket> sockets) {
+        final ByteBuf content;
+        if (encoded instanceof CharSequence) {
+            content = ByteBufUtil.writeUtf8(NettyResources.allocator(), (CharSequence) encoded);
+        } else if (encoded instanceof ByteBuffer) {
+            content = Unpooled.wrappedBuffer((ByteBuffer) encoded);
+        } else {
+            content = Unpooled.wrappedBuffer((byte[]) encoded);
+        }
+
+        CompletableFuture<?>[] written = new CompletableFuture<?>[sockets.size()];
+        int i = 0;
+        for (Socket s : sockets) {
+            written[i++] = write(s, content);
+        }
+
+        return CompletableFuture.allOf(written).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void v, Throwable t) {
+                content.release();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object encoded() {
+        return encoded;
+    }
+
+    private CompletableFuture<Void> write(Socket s, ByteBuf content) {
+        if (!(s instanceof DefaultSocket)) {
+            return s.fireAsync(data).toCompletableFuture();
+        }
+
+        try {
+            return ((DefaultSocket) s).fire(encoded, content);
+        } catch (Throwable t) {
+            return SocketRuntime.failed(t);
+        }
+    }
+}
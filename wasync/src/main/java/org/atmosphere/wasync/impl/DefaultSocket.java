@@ -17,19 +17,27 @@ package org.atmosphere.wasync.impl;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
+import io.netty.buffer.ByteBuf;
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.netty.ws.NettyWebSocket;
 import org.asynchttpclient.ws.WebSocket;
 import org.asynchttpclient.ws.WebSocketListener;
+import org.asynchttpclient.ws.WebSocketUpgradeHandler;
+import org.atmosphere.wasync.Correlator;
 import org.atmosphere.wasync.Event;
 import org.atmosphere.wasync.Function;
 import org.atmosphere.wasync.FunctionWrapper;
@@ -38,9 +46,14 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.TransportFactory;
+import org.atmosphere.wasync.transport.DirectTransport;
+import org.atmosphere.wasync.transport.Http2Transport;
 import org.atmosphere.wasync.transport.LongPollingTransport;
+import org.atmosphere.wasync.transport.LoopbackTransport;
 import org.atmosphere.wasync.transport.SSETransport;
 import org.atmosphere.wasync.transport.StreamTransport;
+import org.atmosphere.wasync.transport.TransportCache;
 import org.atmosphere.wasync.transport.TransportNotSupported;
 import org.atmosphere.wasync.transport.WebSocketTransport;
 import org.atmosphere.wasync.util.FluentStringsMap;
@@ -56,12 +69,19 @@ import org.slf4j.LoggerFactory;
 public class DefaultSocket implements Socket {
 
     private final static Logger logger = LoggerFactory.getLogger(DefaultSocket.class);
+    private final static Map<Request.TRANSPORT, TransportFactory> serviceTransportFactories = loadTransportFactories();
 
     protected Request request;
     protected SocketRuntime socketRuntime;
     protected final List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
-    protected Transport transportInUse;
+    protected volatile Transport transportInUse;
     protected final Options options;
+    private boolean transportCacheFunction;
+    private boolean fallbackFunction;
+    private boolean upgradeFunction;
+    private volatile boolean webSocketFailed;
+    private TransportUpgrade upgrade;
+    private PendingReplies replies;
 
     public DefaultSocket(Options options) {
         this.options = options;
@@ -77,12 +97,77 @@ public class DefaultSocket implements Socket {
             && transportInUse.status().equals(STATUS.CLOSE) ||
                 transportInUse.status().equals(STATUS.ERROR)) {
             transportInUse.error(new IOException("Invalid Socket Status " + transportInUse.status().name()));
-            return socketRuntime.rootFuture;
+            return socketRuntime.written();
         }
 
         return socketRuntime.write(request, data);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Void> fireAsync(Object data) {
+        checkState();
+        return socketRuntime.writeAsync(request, data);
+    }
+
+    /**
+     * Send a message encoded by a {@link DefaultPreparedMessage}.
+     *
+     * @param encoded the encoded message
+     * @param content the bytes of the encoded message, released by the caller
+     * @return a {@link CompletableFuture} completed once the message has been written
+     */
+    CompletableFuture<Void> fire(Object encoded, ByteBuf content) {
+        checkState();
+        return socketRuntime.writeAsync(request, encoded, content);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Void> write(Object data) {
+        checkState();
+        return socketRuntime.writeAsync(request, data, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket flush() {
+        checkState();
+        socketRuntime.flush();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> CompletionStage<R> request(Object data, Class<R> type, long timeout, TimeUnit unit) {
+        checkState();
+        Correlator correlator = options.correlator();
+        if (correlator == null || replies == null) {
+            throw new IllegalStateException("No Correlator");
+        }
+
+        String id = replies.nextId();
+        Object message = correlator.inject(data, id);
+        final CompletableFuture<R> reply = replies.add(id, type, timeout, unit);
+        socketRuntime.writeAsync(request, message).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void v, Throwable t) {
+                if (t != null) {
+                    reply.completeExceptionally(t);
+                }
+            }
+        });
+        return reply;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -116,17 +201,43 @@ public class DefaultSocket implements Socket {
     @Override
     public Socket open(Request request, long timeout, TimeUnit tu) throws IOException {
         this.request = request;
-        RequestBuilder r = new RequestBuilder();
-        r.setUrl(request.uri())
-                .setMethod(request.method().name())
-                .setHeaders(request.headers())
-                .setQueryParams(decodeQueryString(request));
+        if (options.transportCache() != null) {
+            useTransportCache(options.transportCache());
+        }
+        if (options.upgradeToWebSocket() >= 0 && !upgradeFunction) {
+            upgradeFunction = true;
+            functions.add(new FunctionWrapper(Event.OPEN.name(), new Function<String>() {
+                @Override
+                public void on(String s) {
+                    upgrade();
+                }
+            }));
+        }
+
+        if (options.correlator() != null && replies == null) {
+            correlate(options.correlator());
+        }
+
+        if (options.transportRaceStagger() >= 0 && request.transport().size() > 1) {
+            return race(timeout, tu);
+        }
+
+        RequestBuilder r = requestBuilder(decodeQueryString(request));
 
         List<Transport> transports = getTransport(r, request);
 
         return connect(r, transports, timeout, tu);
     }
 
+    private RequestBuilder requestBuilder(FluentStringsMap queryString) {
+        RequestBuilder r = new RequestBuilder();
+        r.setUrl(request.uri())
+                .setMethod(request.method().name())
+                .setHeaders(request.headers())
+                .setQueryParams(queryString);
+        return r;
+    }
+
     static FluentStringsMap decodeQueryString(Request request) {
         Map<String, List<String>> c = request.queryString();
         FluentStringsMap f = new FluentStringsMap();
@@ -134,6 +245,222 @@ public class DefaultSocket implements Socket {
         return f;
     }
 
+    /**
+     * Skip the preferred transports known to fail, probing them again in the background when their failure gets old,
+     * and remember the transport which connects.
+     */
+    private void useTransportCache(final TransportCache cache) {
+        if (!transportCacheFunction) {
+            transportCacheFunction = true;
+            functions.add(new FunctionWrapper(Event.TRANSPORT.name(), new Function<Request.TRANSPORT>() {
+                @Override
+                public void on(Request.TRANSPORT t) {
+                    cache.succeeded(request.uri(), t);
+                }
+            }));
+        }
+
+        List<Request.TRANSPORT> transports = request.transport();
+        int skip = transports.size() - cache.transports(request.uri(), transports).size();
+        if (skip == 0) return;
+
+        List<Request.TRANSPORT> skipped = new ArrayList<Request.TRANSPORT>(transports.subList(0, skip));
+        transports.subList(0, skip).clear();
+        logger.debug("Transports {} not supported by {}, using {}", skipped, request.uri(), transports.get(0));
+        transportSelected(transports.get(0));
+
+        for (Request.TRANSPORT t : skipped) {
+            if (t.equals(Request.TRANSPORT.WEBSOCKET) && cache.probe(request.uri(), t)) {
+                probe(cache, t);
+            }
+        }
+    }
+
+    /**
+     * Complete the requests waiting for a reply with the messages received.
+     */
+    private void correlate(final Correlator correlator) {
+        final PendingReplies r = new PendingReplies();
+        replies = r;
+        functions.add(new FunctionWrapper(Event.MESSAGE.name(), new Function<Object>() {
+            @Override
+            public void on(Object m) {
+                String id = correlator.extract(m);
+                if (id != null) {
+                    r.complete(id, m);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Probe a transport in the background: a WebSocket handshake is sent, and the WebSocket closed once opened.
+     */
+    private void probe(final TransportCache cache, final Request.TRANSPORT t) {
+        final String uri = request.uri();
+        FluentStringsMap queryString = decodeQueryString(request);
+        configureTransport(t, queryString);
+        RequestBuilder r = requestBuilder(queryString);
+        r.setUrl(webSocketUrl(uri));
+
+        logger.debug("Probing transport {} of {}", t, uri);
+        try {
+            final ListenableFuture<NettyWebSocket> f = options.runtime().prepareRequest(r.build())
+                    .execute(new WebSocketUpgradeHandler.Builder().build());
+            f.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        WebSocket webSocket = f.get();
+                        cache.succeeded(uri, t);
+                        webSocket.sendCloseFrame();
+                    } catch (Exception e) {
+                        logger.trace("", e);
+                        cache.failed(uri, t);
+                    }
+                }
+            }, null);
+        } catch (RuntimeException e) {
+            logger.trace("", e);
+            cache.failed(uri, t);
+        }
+    }
+
+    /**
+     * A transport failed to connect.
+     *
+     * @param t the transport
+     */
+    protected void transportFailed(Request.TRANSPORT t) {
+        if (t.equals(Request.TRANSPORT.WEBSOCKET)) {
+            webSocketFailed = true;
+        }
+        if (options.transportCache() != null) {
+            options.transportCache().failed(request.uri(), t);
+        }
+    }
+
+    /**
+     * Race the first two transports of the {@link Request}: the preferred one is started, the next one once
+     * {@link Options#transportRaceStagger()} has elapsed or as soon as the preferred one failed. The first transport
+     * completing its handshake is used, the other one is closed. If both fail, the next transports are tried.
+     * Without a timeout, each transport is given {@link Options#transportRaceTimeout()} to complete its handshake.
+     */
+    protected Socket race(long timeout, TimeUnit tu) throws IOException {
+        List<Request.TRANSPORT> raced = new ArrayList<Request.TRANSPORT>(request.transport().subList(0, 2));
+        long deadline = timeout == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + tu.toMillis(timeout);
+        long wait = options.transportRaceTimeout();
+        TransportRace race = new TransportRace(this);
+
+        for (int i = 0; i < raced.size(); i++) {
+            if (i > 0 && race.await(Math.min(deadline, System.currentTimeMillis() + options.transportRaceStagger()))) {
+                return this;
+            }
+
+            Request.TRANSPORT t = raced.get(i);
+            FluentStringsMap queryString = decodeQueryString(request);
+            configureTransport(t, queryString);
+            RequestBuilder r = requestBuilder(queryString);
+
+            if (timeout == -1) {
+                deadline = wait < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + wait;
+            }
+            TransportRace.Candidate c = race.candidate(t);
+            c.transport = newTransport(t, r, c.functions);
+            c.transport.connectedFuture(c.future);
+            logger.debug("Racing transport {}", t);
+            try {
+                race.started(c, startTransport(c.transport, r));
+            } catch (Throwable e) {
+                logger.error("Unable to open url {}", request.uri(), e);
+                race.failed(c, e);
+            }
+        }
+
+        if (race.await(deadline)) {
+            return this;
+        }
+
+        TransportRace.Candidate last = race.lose();
+        request.transport().removeAll(raced);
+        if (request.transport().size() > 0) {
+            transportSelected(request.transport().get(0));
+            return open(request, timeout, tu);
+        }
+
+        transportConnected(last.transport, last.future);
+        last.functions.open();
+        if (!last.functions.failed()) {
+            transportInUse.error(new IOException("Invalid state: no transport connected after "
+                    + (timeout == -1 ? wait + " " + TimeUnit.MILLISECONDS : timeout + " " + tu)));
+        }
+        return new VoidSocket();
+    }
+
+    /**
+     * Use a transport which completed its handshake.
+     */
+    void transportConnected(Transport transport, DefaultFuture f) {
+        transportInUse = transport;
+        socketRuntime = createRuntime(f, options, functions);
+        transportSelected(transport.name());
+    }
+
+    /**
+     * Upgrade the transport in use to a WebSocket, in the background, unless a WebSocket already failed.
+     */
+    protected synchronized void upgrade() {
+        Transport t = transportInUse;
+        if (upgrade != null || webSocketFailed
+                || !(t instanceof StreamTransport) || t instanceof Http2Transport || !t.status().equals(STATUS.OPEN)) {
+            return;
+        }
+        if (options.transportCache() != null
+                && Boolean.FALSE.equals(options.transportCache().supported(request.uri(), Request.TRANSPORT.WEBSOCKET))) {
+            return;
+        }
+
+        FluentStringsMap queryString = decodeQueryString(request);
+        configureTransport(Request.TRANSPORT.WEBSOCKET, queryString);
+        upgrade = new TransportUpgrade(this, StreamTransport.class.cast(t), options.upgradeToWebSocket());
+        upgrade.start(requestBuilder(queryString));
+    }
+
+    /**
+     * Use the WebSocket the transport has been upgraded to.
+     */
+    void transportUpgraded(Transport transport) {
+        transportInUse = transport;
+        socketRuntime.transport(transport);
+        transportSelected(transport.name());
+    }
+
+    /**
+     * Abort the upgrade in progress, if any.
+     */
+    protected synchronized void abortUpgrade() {
+        if (upgrade != null) {
+            upgrade.abort();
+        }
+    }
+
+    /**
+     * Configure the query string used to connect a transport other than the preferred one.
+     *
+     * @param t           the transport
+     * @param queryString the query string
+     */
+    protected void configureTransport(Request.TRANSPORT t, FluentStringsMap queryString) {
+    }
+
+    /**
+     * Invoked when the transport used by this socket changes.
+     *
+     * @param t the transport
+     */
+    protected void transportSelected(Request.TRANSPORT t) {
+    }
+
     protected Socket connect(final RequestBuilder r, final List<Transport> transports, long timeout, final TimeUnit tu) throws IOException {
 
         if (transports.size() > 0) {
@@ -146,42 +473,28 @@ public class DefaultSocket implements Socket {
         transportInUse.connectedFuture(f);
         timeout = timeout == -1 ? Long.MAX_VALUE : timeout;
 
-        addFunction(timeout, tu);
+        // A single function falls back to the next transport, else every function registered by the previous
+        // connections would remove a transport
+        if (!fallbackFunction) {
+            fallbackFunction = true;
+            addFunction(timeout, tu);
+        }
 
         try {
             if (transportInUse.name().equals(Request.TRANSPORT.WEBSOCKET)) {
-                r.setUrl(webSocketUrl(request.uri()));
                 try {
-                    transportInUse.future(new FutureProxy<ListenableFuture>(this,
-                            options.runtime().prepareRequest(r.build()).execute((AsyncHandler<WebSocket>) transportInUse)));
+                    startTransport(transportInUse, r);
 
                     logger.trace("WebSocket Connect Timeout {}", timeout);
-                    f.get(timeout, tu);
-                } catch (ExecutionException t) {
-                    Throwable e = t.getCause();
-
-                    logger.error("Unable to open url {}", request.uri(), t);
-
-                    if (TransportNotSupported.class.isAssignableFrom(e.getClass())) {
-                        return this;
-                    }
-
-                    transportInUse.close();
-                    closeRuntime(true);
-                    if (!transportInUse.errorHandled() && TimeoutException.class.isAssignableFrom(e.getClass())) {
-                        transportInUse.error(new IOException("Invalid state: " + e.getMessage()));
-                    }
-
-                    return new VoidSocket();
+                    // The failure of the connection is thrown by finishOrThrowException()
+                    f.awaitDone(timeout, tu);
                 } catch (Throwable t) {
                     logger.error("Unable to open url {}", request.uri(), t);
                     transportInUse.onThrowable(t);
                     return new VoidSocket();
                 }
             } else {
-	            r.setUrl(httpUrl(request.uri()));
-                transportInUse.future(new FutureProxy<ListenableFuture>(this,
-                        options.runtime().prepareRequest(r.build()).execute((AsyncHandler<String>) transportInUse)));
+                startTransport(transportInUse, r);
 
                 logger.debug("Http Connect Timeout {}", timeout);
                 try {
@@ -202,6 +515,41 @@ public class DefaultSocket implements Socket {
         return this;
     }
 
+    /**
+     * Send the request connecting a transport, without waiting for the connection.
+     *
+     * @return the future of the request, or null
+     */
+    protected Future startTransport(Transport transport, RequestBuilder r) throws IOException {
+        Future f = null;
+        if (transport.name().equals(Request.TRANSPORT.WEBSOCKET)) {
+            r.setUrl(webSocketUrl(request.uri()));
+            if (transport instanceof DirectTransport) {
+                DirectTransport.class.cast(transport).connect();
+            } else {
+                f = new FutureProxy<ListenableFuture>(this,
+                        options.runtime().prepareRequest(r.build()).execute((AsyncHandler<WebSocket>) transport));
+            }
+        } else {
+            r.setUrl(httpUrl(request.uri()));
+            if (transport instanceof DirectTransport) {
+                DirectTransport.class.cast(transport).connect();
+            } else if (transport.name().equals(Request.TRANSPORT.HTTP2)) {
+                Http2Transport.class.cast(transport).connect();
+            } else {
+                org.asynchttpclient.Request built = transport instanceof StreamTransport
+                        ? StreamTransport.class.cast(transport).request(r) : r.build();
+                f = new FutureProxy<ListenableFuture>(this,
+                        options.runtime().prepareRequest(built).execute((AsyncHandler<String>) transport));
+            }
+        }
+
+        if (f != null) {
+            transport.future(f);
+        }
+        return f;
+    }
+
     private String webSocketUrl(String url) {
         return url.startsWith("http://") || url.startsWith("https://") ? "ws" + url.substring(4) : url;
     }
@@ -214,7 +562,7 @@ public class DefaultSocket implements Socket {
         functions.add(new FunctionWrapper("", new Function<TransportNotSupported>() {
             @Override
             public void on(TransportNotSupported transportNotSupported) {
-                request.transport().remove(0);
+                transportFailed(request.transport().remove(0));
                 if (request.transport().size() > 0) {
                     try {
                         open(request, timeout, tu);
@@ -233,6 +581,11 @@ public class DefaultSocket implements Socket {
      */
     @Override
     public void close() {
+        abortUpgrade();
+        if (replies != null) {
+            replies.fail(new IOException("Socket closed"));
+        }
+
         // Not connected, but close the underlying AHC.
         if (transportInUse == null) {
             closeRuntime(false);
@@ -287,6 +640,15 @@ public class DefaultSocket implements Socket {
         }
     }
 
+    @Override
+    public boolean isWritable() {
+        Transport t = transportInUse;
+        if (t instanceof WebSocketTransport) {
+            return ((WebSocketTransport) t).isWritable();
+        }
+        return t != null && t.status().equals(STATUS.OPEN);
+    }
+
     protected SocketRuntime internalSocket() {
         return socketRuntime;
     }
@@ -295,24 +657,63 @@ public class DefaultSocket implements Socket {
         List<Transport> transports = new ArrayList<Transport>();
 
         if (request.transport().size() == 0) {
-            transports.add(new WebSocketTransport(r, options, request, functions));
-            transports.add(new LongPollingTransport(r, options, request, functions));
+            transports.add(newTransport(Request.TRANSPORT.WEBSOCKET, r, functions));
+            transports.add(newTransport(Request.TRANSPORT.LONG_POLLING, r, functions));
         }
 
         for (Request.TRANSPORT t : request.transport()) {
-            if (t.equals(Request.TRANSPORT.WEBSOCKET)) {
-                transports.add(new WebSocketTransport(r, options, request, functions));
-            } else if (t.equals(Request.TRANSPORT.SSE)) {
-                transports.add(new SSETransport(r, options, request, functions));
-            } else if (t.equals(Request.TRANSPORT.LONG_POLLING)) {
-                transports.add(new LongPollingTransport(r, options, request, functions));
-            } else if (t.equals(Request.TRANSPORT.STREAMING)) {
-                transports.add(new StreamTransport(r, options, request, functions));
+            Transport transport = newTransport(t, r, functions);
+            if (transport != null) {
+                transports.add(transport);
             }
         }
         return transports;
     }
 
+    protected Transport newTransport(Request.TRANSPORT t, RequestBuilder r, List<FunctionWrapper> functions) {
+        TransportFactory factory = options.transportFactories().get(t);
+        if (factory == null) {
+            factory = serviceTransportFactories.get(t);
+        }
+        if (factory != null) {
+            return factory.newTransport(r, options, request, functions);
+        }
+
+        if (t.equals(Request.TRANSPORT.WEBSOCKET)) {
+            return new WebSocketTransport(r, options, request, functions);
+        } else if (t.equals(Request.TRANSPORT.SSE)) {
+            return new SSETransport(r, options, request, functions);
+        } else if (t.equals(Request.TRANSPORT.LONG_POLLING)) {
+            return new LongPollingTransport(r, options, request, functions);
+        } else if (t.equals(Request.TRANSPORT.STREAMING)) {
+            return new StreamTransport(r, options, request, functions);
+        } else if (t.equals(Request.TRANSPORT.HTTP2)) {
+            return new Http2Transport(r, options, request, functions);
+        } else if (t.equals(Request.TRANSPORT.LOOPBACK)) {
+            return new LoopbackTransport(request, functions);
+        }
+        return null;
+    }
+
+
+    /**
+     * The {@link TransportFactory}s listed in <tt>META-INF/services</tt>. The first one found for a
+     * {@link Request.TRANSPORT} is used.
+     */
+    private static Map<Request.TRANSPORT, TransportFactory> loadTransportFactories() {
+        Map<Request.TRANSPORT, TransportFactory> factories = new EnumMap<Request.TRANSPORT, TransportFactory>(Request.TRANSPORT.class);
+        try {
+            for (TransportFactory f : ServiceLoader.load(TransportFactory.class)) {
+                if (!factories.containsKey(f.name())) {
+                    logger.debug("Using {} for transport {}", f.getClass().getName(), f.name());
+                    factories.put(f.name(), f);
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.warn("Unable to load the TransportFactory", e);
+        }
+        return factories;
+    }
 
     protected Request request() {
         return request;
@@ -325,6 +726,26 @@ public class DefaultSocket implements Socket {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
         }
 
+        @Override
+        public CompletionStage<Void> fireAsync(Object data) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public CompletionStage<Void> write(Object data) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public Socket flush() {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public <R> CompletionStage<R> request(Object data, Class<R> type, long timeout, TimeUnit unit) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
         @Override
         public Socket on(Function<? extends Object> function) {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
@@ -355,6 +776,11 @@ public class DefaultSocket implements Socket {
             return STATUS.ERROR;
         }
 
+        @Override
+        public boolean isWritable() {
+            return false;
+        }
+
         @Override
         public Socket open(Request request, long timeout, TimeUnit tu) throws IOException {
             throw new IllegalStateException("An error occured during connection. Please add a Function(Throwable) to debug.");
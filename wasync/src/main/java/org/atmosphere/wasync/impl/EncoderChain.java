@@ -0,0 +1,103 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.atmosphere.wasync.Encoder;
+import org.atmosphere.wasync.util.TypeResolver;
+
+/**
+ * The {@link Encoder}s of a {@link org.atmosphere.wasync.Request}, compiled. Every {@link Encoder} whose type
+ * argument is assignable from the message's class is applied, in order, to the output of the previous one. The type
+ * arguments are resolved once per {@link Encoder} class, and the {@link Encoder}s applying to a class are computed
+ * once per class.
+ */
+final class EncoderChain {
+
+    private final static ClassValue<Class<?>> ENCODED_TYPE = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            Class<?>[] typeArguments = TypeResolver.resolveArguments(type.asSubclass(Encoder.class), Encoder.class);
+            return typeArguments.length > 0 ? typeArguments[0] : null;
+        }
+    };
+
+    private final List<Encoder<?, ?>> list;
+    private final Encoder[] encoders;
+    private final Class<?>[] types;
+    // Held by the chain only, a ClassValue would hold it for as long as the classes are loaded
+    private final ConcurrentMap<Class<?>, boolean[]> applying = new ConcurrentHashMap<Class<?>, boolean[]>();
+
+    EncoderChain(List<Encoder<?, ?>> list) {
+        this.list = list;
+        encoders = list.toArray(new Encoder[list.size()]);
+        types = new Class<?>[encoders.length];
+        for (int i = 0; i < encoders.length; i++) {
+            types[i] = ENCODED_TYPE.get(encoders[i].getClass());
+        }
+    }
+
+    /**
+     * Is this chain compiled from the {@link Encoder}s.
+     *
+     * @param list the {@link Encoder}s of a {@link org.atmosphere.wasync.Request}
+     * @return true if the {@link Encoder}s haven't changed
+     */
+    boolean compiledFrom(List<Encoder<?, ?>> list) {
+        if (this.list != list || encoders.length != list.size()) {
+            return false;
+        }
+        for (int i = 0; i < encoders.length; i++) {
+            if (encoders[i] != list.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean[] applying(Class<?> type) {
+        boolean[] b = applying.get(type);
+        if (b == null) {
+            b = new boolean[types.length];
+            for (int i = 0; i < types.length; i++) {
+                b[i] = types[i] != null && types[i].isAssignableFrom(type);
+            }
+            applying.put(type, b);
+        }
+        return b;
+    }
+
+    @SuppressWarnings("unchecked")
+    Object encode(Object instanceType) {
+        Class<?> type = instanceType.getClass();
+        boolean[] b = applying(type);
+        for (int i = 0; i < encoders.length; i++) {
+            if (b[i]) {
+                instanceType = encoders[i].encode(instanceType);
+                if (instanceType == null) {
+                    return null;
+                } else if (instanceType.getClass() != type) {
+                    type = instanceType.getClass();
+                    b = applying(type);
+                }
+            }
+        }
+        return instanceType;
+    }
+}
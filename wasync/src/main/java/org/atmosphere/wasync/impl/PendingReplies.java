@@ -0,0 +1,145 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.atmosphere.wasync.util.NettyResources;
+
+/**
+ * The requests of a {@link DefaultSocket} waiting for their reply, by correlation id. The requests are never locked:
+ * a reply completes its request from the thread dispatching the messages, and the requests whose timeout has elapsed
+ * are failed by a sweep, scheduled on the timer shared by every {@link org.atmosphere.wasync.Socket} while requests
+ * are pending.
+ */
+final class PendingReplies implements TimerTask {
+
+    /**
+     * The interval between two sweeps, in milliseconds, bounding how late a request times out.
+     */
+    final static long SWEEP_INTERVAL = 100;
+
+    private final static class Pending<R> {
+        final Class<R> type;
+        final long deadline;
+        final CompletableFuture<R> reply = new CompletableFuture<R>();
+
+        Pending(Class<R> type, long deadline) {
+            this.type = type;
+            this.deadline = deadline;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Pending<?>> pending = new ConcurrentHashMap<String, Pending<?>>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * @return a correlation id, unique for the {@link DefaultSocket}
+     */
+    String nextId() {
+        return Long.toString(ids.incrementAndGet());
+    }
+
+    /**
+     * Wait for the reply of a request. The request is forgotten once completed, including when cancelled.
+     *
+     * @param id      the correlation id
+     * @param type    the type of the reply
+     * @param timeout the time to wait for the reply
+     * @param unit    the unit of the timeout
+     * @return a {@link CompletableFuture} completed with the reply, or exceptionally with a {@link TimeoutException}
+     */
+    <R> CompletableFuture<R> add(final String id, Class<R> type, long timeout, TimeUnit unit) {
+        final Pending<R> p = new Pending<R>(type, System.nanoTime() + unit.toNanos(timeout));
+        pending.put(id, p);
+        p.reply.whenComplete(new BiConsumer<R, Throwable>() {
+            @Override
+            public void accept(R r, Throwable t) {
+                pending.remove(id, p);
+            }
+        });
+        schedule();
+        return p.reply;
+    }
+
+    /**
+     * Complete the request a message replies to.
+     *
+     * @param id      the correlation id of the message
+     * @param message the decoded message
+     * @return true if the message completed a request
+     */
+    boolean complete(String id, Object message) {
+        Pending<?> p = pending.get(id);
+        return p != null && complete(p, message);
+    }
+
+    private static <R> boolean complete(Pending<R> p, Object message) {
+        // Another decoded form of the message may match
+        return p.type.isInstance(message) && p.reply.complete(p.type.cast(message));
+    }
+
+    /**
+     * Fail every pending request.
+     *
+     * @param t the cause
+     */
+    void fail(Throwable t) {
+        for (Pending<?> p : pending.values()) {
+            p.reply.completeExceptionally(t);
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            NettyResources.timer().newTimeout(this, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sweep the requests whose timeout has elapsed.
+     */
+    @Override
+    public void run(Timeout timeout) {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Pending<?>> e : pending.entrySet()) {
+            Pending<?> p = e.getValue();
+            if (now - p.deadline >= 0) {
+                p.reply.completeExceptionally(new TimeoutException("No reply to request " + e.getKey()));
+            }
+        }
+
+        scheduled.set(false);
+        // A request added meanwhile may not have been scheduled
+        if (!pending.isEmpty()) {
+            schedule();
+        }
+    }
+}
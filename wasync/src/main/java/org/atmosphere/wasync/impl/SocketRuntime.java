@@ -17,18 +17,34 @@ package org.atmosphere.wasync.impl;
 
 import static org.atmosphere.wasync.Event.MESSAGE;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.BoundRequestBuilder;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Response;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
 import org.atmosphere.wasync.Encoder;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Future;
@@ -36,11 +52,15 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.transport.DirectTransport;
+import org.atmosphere.wasync.transport.Http2Transport;
+import org.atmosphere.wasync.transport.OutboundQueueFull;
 import org.atmosphere.wasync.transport.TransportsUtil;
 import org.atmosphere.wasync.transport.WebSocketTransport;
 import org.atmosphere.wasync.util.FluentStringsMap;
+import org.atmosphere.wasync.util.NettyResources;
 import org.atmosphere.wasync.util.ReaderInputStream;
-import org.atmosphere.wasync.util.TypeResolver;
+import org.atmosphere.wasync.util.RequestTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,10 +73,12 @@ public class SocketRuntime {
 
     private final static Logger logger = LoggerFactory.getLogger(SocketRuntime.class);
 
-    protected Transport transport;
+    protected volatile Transport transport;
     protected final Options options;
     protected final DefaultFuture rootFuture;
     protected final List<FunctionWrapper> functions;
+    private volatile EncoderChain encoderChain;
+    private final ConcurrentHashMap<Request, RequestTemplate> writeTemplates = new ConcurrentHashMap<Request, RequestTemplate>();
 
     public SocketRuntime(Transport transport, Options options, DefaultFuture rootFuture, List<FunctionWrapper> functions) {
         this.transport = transport;
@@ -69,20 +91,30 @@ public class SocketRuntime {
         return rootFuture;
     }
 
-    protected Object invokeEncoder(List<Encoder<? extends Object, ?>> encoders, Object instanceType) {
-        for (Encoder e : encoders) {
-            Class<?>[] typeArguments = TypeResolver.resolveArguments(e.getClass(), Encoder.class);
+    /**
+     * Write using another {@link Transport}, once the transport has been upgraded.
+     *
+     * @param transport the {@link Transport}
+     */
+    void transport(Transport transport) {
+        this.transport = transport;
+    }
 
-            if (typeArguments.length > 0 && typeArguments[0].isAssignableFrom(instanceType.getClass())) {
-                instanceType = e.encode(instanceType);
-            }
+    protected Object invokeEncoder(List<Encoder<? extends Object, ?>> encoders, Object instanceType) {
+        EncoderChain c = encoderChain;
+        if (c == null || !c.compiledFrom(encoders)) {
+            // The Encoders of a Request are compiled once, unless they change
+            c = new EncoderChain(encoders);
+            encoderChain = c;
         }
-        return instanceType;
+        return c.encode(instanceType);
     }
 
     public Future write(Request request, Object data) throws IOException {
         // Execute encoder
         Object object = invokeEncoder(request.encoders(), data);
+        // The transport may be upgraded meanwhile, but never downgraded
+        Transport transport = this.transport;
 
         boolean webSocket = transport.name().equals(Request.TRANSPORT.WEBSOCKET);
         if (webSocket
@@ -90,61 +122,260 @@ public class SocketRuntime {
                 || transport.status().equals(Socket.STATUS.ERROR))) {
             transport.error(new IOException("Invalid Socket Status " + transport.status().name()));
         } else {
-            if (webSocket) {
+            if (transport instanceof DirectTransport) {
+                DirectTransport.class.cast(transport).write(object);
+            } else if (webSocket) {
                 webSocketWrite(request, object, data);
             } else {
-                try {
-                    Response r = httpWrite(request, object, data).get(rootFuture.time(), rootFuture.timeUnit());
-                    String m = r.getResponseBody();
-                    if (m.length() > 0) {
-                        TransportsUtil.invokeFunction(request.decoders(), functions, String.class, m, MESSAGE.name(), request.functionResolver());
-                    }
-                } catch (TimeoutException t) {
-                    logger.trace("AHC Timeout", t);
-                    rootFuture.timeoutException(t);
-                } catch (Throwable t) {
+                return post(transport, request, object, data);
+            }
+        }
+
+        return written();
+    }
+
+    /**
+     * A {@link Future} for a write already done. The shared {@link #future()} is only used to throw, once, the
+     * exception of a previous failure that no {@link org.atmosphere.wasync.Function} handled.
+     *
+     * @return a new {@link Future}, done
+     * @throws IOException the unhandled failure
+     */
+    protected Future written() throws IOException {
+        rootFuture.finishOrThrowException();
+        DefaultFuture f = new DefaultFuture(rootFuture.socket());
+        f.done();
+        return f;
+    }
+
+    /**
+     * Write without blocking.
+     *
+     * @return a {@link CompletableFuture} completed once the message has been flushed, for
+     * {@link Request.TRANSPORT#WEBSOCKET}, or once the response has been received and dispatched, for others transports
+     */
+    public CompletableFuture<Void> writeAsync(Request request, Object data) {
+        return writeAsync0(request, data, true);
+    }
+
+    /**
+     * Write without blocking, and without flushing for {@link Request.TRANSPORT#WEBSOCKET}. Others transports write
+     * like {@link #writeAsync(Request, Object)}.
+     *
+     * @param flush false to write without flushing, until {@link #flush()}
+     * @return a {@link CompletableFuture} completed once the message has been flushed
+     */
+    public CompletableFuture<Void> writeAsync(Request request, Object data, boolean flush) {
+        return writeAsync0(request, data, flush);
+    }
+
+    /**
+     * Write a message encoded once for many sockets, see {@link org.atmosphere.wasync.PreparedMessage}. With
+     * {@link Request.TRANSPORT#WEBSOCKET}, a retained duplicate of its content is written as a frame, without copying
+     * it. Others transports write the encoded message.
+     *
+     * @param object  the encoded message, a String or byte[]
+     * @param content the bytes of the encoded message, released by the caller once written
+     * @return a {@link CompletableFuture} completed once the message has been written
+     */
+    public CompletableFuture<Void> writeAsync(Request request, Object object, ByteBuf content) {
+        Transport transport = this.transport;
+        if (!(transport instanceof WebSocketTransport)) {
+            return writeEncodedAsync(request, object, object, true);
+        }
+
+        if (transport.status().equals(Socket.STATUS.CLOSE) || transport.status().equals(Socket.STATUS.ERROR)) {
+            IOException e = new IOException("Invalid Socket Status " + transport.status().name());
+            transport.error(e);
+            return failed(e);
+        }
+        ByteBuf duplicate = content.retainedDuplicate();
+        return WebSocketTransport.class.cast(transport).sendMessageAsync(object instanceof CharSequence
+                ? new TextWebSocketFrame(duplicate) : new BinaryWebSocketFrame(duplicate));
+    }
+
+    /**
+     * Flush what has been written using {@link #writeAsync(Request, Object, boolean)}.
+     */
+    public void flush() {
+        Transport transport = this.transport;
+        if (transport instanceof WebSocketTransport) {
+            WebSocketTransport.class.cast(transport).flush();
+        }
+    }
+
+    private CompletableFuture<Void> writeAsync0(Request request, Object data, boolean flush) {
+        try {
+            return writeEncodedAsync(request, invokeEncoder(request.encoders(), data), data, flush);
+        } catch (Throwable t) {
+            return failed(t);
+        }
+    }
+
+    /**
+     * Write an encoded message without blocking.
+     *
+     * @param object the encoded message
+     * @param data   the message, before being encoded
+     * @param flush  false to write without flushing, for {@link Request.TRANSPORT#WEBSOCKET}
+     * @return a {@link CompletableFuture} completed once the message has been written
+     */
+    protected CompletableFuture<Void> writeEncodedAsync(Request request, Object object, Object data, boolean flush) {
+        try {
+            Transport transport = this.transport;
+
+            boolean webSocket = transport.name().equals(Request.TRANSPORT.WEBSOCKET);
+            if (webSocket
+                    && (transport.status().equals(Socket.STATUS.CLOSE)
+                    || transport.status().equals(Socket.STATUS.ERROR))) {
+                IOException e = new IOException("Invalid Socket Status " + transport.status().name());
+                transport.error(e);
+                return failed(e);
+            } else if (transport instanceof DirectTransport) {
+                DirectTransport.class.cast(transport).write(object);
+                return CompletableFuture.completedFuture(null);
+            } else if (webSocket) {
+                return webSocketWriteAsync(request, object, data, flush);
+            } else {
+                return postAsync(transport, request, object, data);
+            }
+        } catch (Throwable t) {
+            return failed(t);
+        }
+    }
+
+    /**
+     * Write using a POST, without waiting for its response. The response's body is dispatched once received.
+     *
+     * @return a {@link Future} done once the response is received
+     */
+    protected Future post(Transport transport, Request request, Object object, Object data) {
+        final DefaultFuture f = new DefaultFuture(rootFuture.socket());
+        postAsync(transport, request, object, data).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void v, Throwable t) {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    t = t.getCause();
+                }
+                if (t != null) {
                     logger.error("", t);
+                    f.ioException(t instanceof IOException ? (IOException) t : new IOException(t));
+                } else {
+                    f.done();
                 }
             }
+        });
+        return f;
+    }
+
+    protected CompletableFuture<Void> postAsync(Transport transport, final Request request, Object object, Object data) {
+        CompletableFuture<String> response;
+        try {
+            if (transport.name().equals(Request.TRANSPORT.HTTP2)) {
+                response = Http2Transport.class.cast(transport).write(writeTemplate(request), object);
+            } else {
+                response = httpWrite(request, object, data).toCompletableFuture().thenApply(new java.util.function.Function<Response, String>() {
+                    @Override
+                    public String apply(Response r) {
+                        return r.getResponseBody();
+                    }
+                });
+            }
+        } catch (Throwable t) {
+            return failed(t);
         }
 
-        return rootFuture.finishOrThrowException();
+        return response.thenAccept(new Consumer<String>() {
+            @Override
+            public void accept(String m) {
+                if (m.length() > 0) {
+                    TransportsUtil.invokeFunction(request.decoders(), functions, String.class, m, MESSAGE.name(), request.functionResolver());
+                }
+            }
+        });
+    }
+
+    protected CompletableFuture<Void> webSocketWriteAsync(Request request, Object object, Object data, boolean flush)
+            throws IOException {
+        WebSocketTransport webSocketTransport = WebSocketTransport.class.cast(transport);
+        if (String.class.isAssignableFrom(object.getClass())) {
+            return flush ? webSocketTransport.sendMessageAsync(object.toString())
+                    : webSocketTransport.writeMessageAsync(object.toString());
+        } else if (byte[].class.isAssignableFrom(object.getClass())) {
+            return flush ? webSocketTransport.sendMessageAsync((byte[]) object)
+                    : webSocketTransport.writeMessageAsync((byte[]) object);
+        } else if (object instanceof ByteBuffer && flush) {
+            return webSocketTransport.sendMessageAsync((ByteBuffer) object);
+        } else if (object instanceof ByteBuffer || object instanceof CharSequence) {
+            return flush ? webSocketTransport.sendMessageAsync(frame(object))
+                    : webSocketTransport.writeMessageAsync(frame(object));
+        } else if (object instanceof InputStream || object instanceof Reader || object instanceof Path
+                || object instanceof FileChannel) {
+            // Written fragment by fragment by the transport, each one once the previous has been flushed
+            return webSocketTransport.streamMessageAsync(object);
+        }
+        throw new IllegalStateException("No Encoder for " + data);
+    }
+
+    protected static CompletableFuture<Void> failed(Throwable t) {
+        CompletableFuture<Void> f = new CompletableFuture<Void>();
+        f.completeExceptionally(t);
+        return f;
     }
 
     public void webSocketWrite(Request request, Object object, Object data) throws IOException {
         WebSocketTransport webSocketTransport = WebSocketTransport.class.cast(transport);
         if (InputStream.class.isAssignableFrom(object.getClass())) {
-            InputStream is = (InputStream) object;
-            ByteArrayOutputStream bs = new ByteArrayOutputStream();
-            //TODO: We need to stream directly, in AHC!
-            byte[] buffer = new byte[8192];
-            int n = 0;
-            while (-1 != (n = is.read(buffer))) {
-                bs.write(buffer, 0, n);
-            }
-            webSocketTransport.sendMessage(bs.toByteArray());
+            webSocketTransport.sendMessage((InputStream) object);
         } else if (Reader.class.isAssignableFrom(object.getClass())) {
-            Reader is = (Reader) object;
-            StringWriter bs = new StringWriter();
-            //TODO: We need to stream directly, in AHC!
-            char[] chars = new char[8192];
-            int n = 0;
-            while (-1 != (n = is.read(chars))) {
-                bs.write(chars, 0, n);
-            }
-            webSocketTransport.sendMessage(bs.getBuffer().toString());
+            webSocketTransport.sendMessage((Reader) object);
+        } else if (object instanceof Path) {
+            webSocketTransport.sendMessage((Path) object);
+        } else if (object instanceof FileChannel) {
+            webSocketTransport.sendMessage((FileChannel) object);
         } else if (String.class.isAssignableFrom(object.getClass())) {
-            webSocketTransport.sendMessage(object.toString());
+            rejected(webSocketTransport.sendMessageAsync(object.toString()));
         } else if (byte[].class.isAssignableFrom(object.getClass())) {
-            webSocketTransport.sendMessage((byte[]) object);
+            rejected(webSocketTransport.sendMessageAsync((byte[]) object));
+        } else if (object instanceof ByteBuffer) {
+            rejected(webSocketTransport.sendMessageAsync((ByteBuffer) object));
+        } else if (object instanceof CharSequence) {
+            rejected(webSocketTransport.sendMessageAsync(frame(object)));
         } else {
             throw new IllegalStateException("No Encoder for " + data);
         }
     }
 
+    /**
+     * A frame for a message encoded as a {@link ByteBuffer}, which is wrapped without being copied, or as a
+     * {@link CharSequence}, which is written using UTF-8 into a pooled buffer.
+     */
+    private static WebSocketFrame frame(Object object) {
+        if (object instanceof ByteBuffer) {
+            return new BinaryWebSocketFrame(Unpooled.wrappedBuffer((ByteBuffer) object));
+        }
+        return new TextWebSocketFrame(ByteBufUtil.writeUtf8(NettyResources.allocator(), (CharSequence) object));
+    }
+
+    /**
+     * Throw if a message has been rejected by the WebSocket's outbound queue, according to
+     * {@link org.atmosphere.wasync.Options#outboundQueueOverflow()}.
+     */
+    private static void rejected(CompletableFuture<Void> written) throws OutboundQueueFull {
+        if (!written.isCompletedExceptionally()) return;
+
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OutboundQueueFull) {
+                throw (OutboundQueueFull) e.getCause();
+            }
+        }
+    }
+
     public ListenableFuture<Response> httpWrite(Request request, Object object, Object data) throws IOException {
 
-        BoundRequestBuilder b = configureAHC(request);
+        BoundRequestBuilder b = new BoundRequestBuilder(options.runtime(), writeTemplate(request));
 
         if (InputStream.class.isAssignableFrom(object.getClass())) {
             //TODO: Allow reading the response.
@@ -155,11 +386,46 @@ public class SocketRuntime {
             return b.setBody((String) object).execute();
         } else if (byte[].class.isAssignableFrom(object.getClass())) {
             return b.setBody((byte[]) object).execute();
+        } else if (object instanceof ByteBuffer) {
+            return b.setBody((ByteBuffer) object).execute();
+        } else if (object instanceof CharSequence) {
+            return b.setBody(object.toString()).execute();
+        } else if (object instanceof Path) {
+            Path path = (Path) object;
+            // A File is sent using a FileRegion, with sendfile when available
+            return path.getFileSystem() == FileSystems.getDefault() ? b.setBody(path.toFile()).execute()
+                    : b.setBody(Files.newInputStream(path)).execute();
+        } else if (object instanceof FileChannel) {
+            return b.setBody(new FileChannelBodyGenerator((FileChannel) object)).execute();
         } else {
             throw new IllegalStateException("No Encoder for " + data);
         }
     }
 
+    /**
+     * The request used to write, without its body. It is built once using {@link #configureAHC(Request)} and
+     * reused until the tracking id or the transport changes.
+     *
+     * @param request the {@link Request}
+     * @return an AHC {@link org.asynchttpclient.Request}
+     */
+    protected org.asynchttpclient.Request writeTemplate(final Request request) {
+        RequestTemplate template = writeTemplates.get(request);
+        if (template == null) {
+            template = new RequestTemplate() {
+                @Override
+                protected org.asynchttpclient.Request build(Map<String, List<String>> queryString) {
+                    return configureAHC(request).build();
+                }
+            };
+            RequestTemplate t = writeTemplates.putIfAbsent(request, template);
+            if (t != null) {
+                template = t;
+            }
+        }
+        return template.get(request.queryString(), transport);
+    }
+
     protected BoundRequestBuilder configureAHC(Request request) {
         FluentStringsMap m = DefaultSocket.decodeQueryString(request);
 
@@ -169,4 +435,50 @@ public class SocketRuntime {
                 .setMethod(Request.METHOD.POST.name());
     }
 
-}
\ No newline at end of file
+
+    /**
+     * The body of a request sending a {@link FileChannel}, from its position to its end. The channel is read using
+     * positional reads straight into the buffers written to the connection, so its position doesn't change and the
+     * body can be sent again if the request is retried.
+     */
+    private final static class FileChannelBodyGenerator implements BodyGenerator {
+
+        private final FileChannel channel;
+        private final long position;
+
+        FileChannelBodyGenerator(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.position = channel.position();
+        }
+
+        @Override
+        public Body createBody() {
+            return new Body() {
+                private long read = position;
+
+                @Override
+                public long getContentLength() {
+                    try {
+                        return channel.size() - position;
+                    } catch (IOException e) {
+                        return -1;
+                    }
+                }
+
+                @Override
+                public BodyState transferTo(ByteBuf target) throws IOException {
+                    int n = target.writeBytes(channel, read, target.writableBytes());
+                    if (n < 0) {
+                        return BodyState.STOP;
+                    }
+                    read += n;
+                    return BodyState.CONTINUE;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.transport.DeferredFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Race transports, happy eyeballs style. The events of every {@link Candidate} are deferred until one completes
+ * its handshake: that one becomes the {@link DefaultSocket}'s transport and its events are replayed, the others
+ * are closed and their events dropped.
+ */
+final class TransportRace implements DeferredFunctions.Listener {
+
+    private final static Logger logger = LoggerFactory.getLogger(TransportRace.class);
+
+    private final DefaultSocket socket;
+    private final List<Candidate> candidates = new ArrayList<Candidate>();
+    private Candidate winner;
+    private boolean settled;
+    private int failures;
+
+    TransportRace(DefaultSocket socket) {
+        this.socket = socket;
+    }
+
+    synchronized Candidate candidate(Request.TRANSPORT name) {
+        Candidate c = new Candidate(name);
+        candidates.add(c);
+        return c;
+    }
+
+    /**
+     * A transport has been started. It is aborted if another one connected meanwhile.
+     */
+    void started(Candidate c, Future underlyingFuture) {
+        boolean abort;
+        synchronized (this) {
+            c.underlyingFuture = underlyingFuture;
+            abort = settled && winner != c;
+        }
+        if (abort) {
+            c.abort();
+        }
+    }
+
+    /**
+     * Wait for a transport to complete its handshake, or for every transport to fail.
+     *
+     * @param deadline the deadline, in milliseconds
+     * @return true if a transport completed its handshake
+     */
+    synchronized boolean await(long deadline) throws IOException {
+        try {
+            long wait;
+            while (!settled && failures < candidates.size() && (wait = deadline - System.currentTimeMillis()) > 0) {
+                wait(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return winner != null;
+    }
+
+    /**
+     * End the race without a winner. The transports still waiting for their handshake are failed, without being
+     * recorded as unsupported, and every transport but the last one is closed.
+     *
+     * @return the last transport, closed unless it failed before the end of the race
+     */
+    Candidate lose() {
+        List<Candidate> losers;
+        synchronized (this) {
+            if (winner != null) {
+                throw new IllegalStateException("Transport " + winner.name + " already connected");
+            }
+            settled = true;
+            losers = new ArrayList<Candidate>(candidates);
+        }
+
+        Candidate last = losers.get(losers.size() - 1);
+        for (Candidate c : losers) {
+            if (!failed(c, "no handshake before the deadline", false) && c == last) {
+                continue;
+            }
+            c.abort();
+        }
+        return last;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOpen(DeferredFunctions functions) {
+        // The race is won once the connect future is done
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onFailure(DeferredFunctions functions, Object cause) {
+        for (Candidate c : candidates()) {
+            if (c.functions == functions) {
+                failed(c, cause);
+            }
+        }
+    }
+
+    private synchronized List<Candidate> candidates() {
+        return new ArrayList<Candidate>(candidates);
+    }
+
+    /**
+     * A transport failed to connect.
+     *
+     * @return true if the transport was still connecting
+     */
+    boolean failed(Candidate c, Object cause) {
+        return failed(c, cause, true);
+    }
+
+    /**
+     * @param unsupported false if the transport only missed the deadline, which says nothing about the server
+     */
+    private boolean failed(Candidate c, Object cause, boolean unsupported) {
+        synchronized (this) {
+            if (c.failed) return false;
+            c.failed = true;
+            failures++;
+            notifyAll();
+        }
+        logger.debug("Transport {} failed: {}", c.name, cause);
+        if (unsupported) {
+            socket.transportFailed(c.name);
+        }
+        return true;
+    }
+
+    private void won(Candidate c) {
+        List<Candidate> losers = new ArrayList<Candidate>();
+        synchronized (this) {
+            if (settled || c.failed) return;
+            settled = true;
+            winner = c;
+            for (Candidate l : candidates) {
+                if (l != c) {
+                    losers.add(l);
+                }
+            }
+        }
+        logger.debug("Transport {} connected first", c.name);
+
+        for (Candidate l : losers) {
+            l.abort();
+        }
+        socket.transportConnected(c.transport, c.future);
+        c.functions.open();
+
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * A transport of the race.
+     */
+    final class Candidate {
+
+        final Request.TRANSPORT name;
+        final DeferredFunctions functions;
+        final RaceFuture future;
+        Transport transport;
+        volatile Future underlyingFuture;
+        private boolean failed;
+
+        Candidate(Request.TRANSPORT name) {
+            this.name = name;
+            this.functions = new DeferredFunctions(socket.functions, TransportRace.this);
+            this.future = new RaceFuture(this);
+        }
+
+        void abort() {
+            logger.debug("Aborting transport {}", name);
+            functions.discard();
+            // Cancel the pending handshake first, closing the transport completes its future
+            if (underlyingFuture != null) {
+                underlyingFuture.cancel(true);
+            }
+            if (transport != null) {
+                transport.close();
+            }
+        }
+    }
+
+    /**
+     * The connect future of a {@link Candidate}: done without an exception once the handshake completed.
+     */
+    final class RaceFuture extends DefaultFuture {
+
+        private final Candidate candidate;
+        private volatile boolean failure;
+
+        RaceFuture(Candidate candidate) {
+            super(socket);
+            this.candidate = candidate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Future ioException(IOException t) {
+            failure = true;
+            return super.ioException(t);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void done() {
+            if (failure || candidate.functions.failed()) {
+                failed(candidate, "connect failed");
+            } else {
+                won(candidate);
+            }
+            super.done();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.asynchttpclient.RequestBuilder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.transport.DeferredFunctions;
+import org.atmosphere.wasync.transport.StreamTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upgrade the transport of a {@link DefaultSocket} to a WebSocket, in the background. The events of the WebSocket
+ * are deferred until the previous transport is drained: the socket then uses the WebSocket and its events are
+ * replayed, so the messages are dispatched in the order they were received. If the WebSocket fails before being
+ * opened, it is closed and its events dropped.
+ */
+final class TransportUpgrade implements DeferredFunctions.Listener {
+
+    private final static Logger logger = LoggerFactory.getLogger(TransportUpgrade.class);
+
+    private final DefaultSocket socket;
+    private final StreamTransport from;
+    private final long drainTimeout;
+    private final DeferredFunctions functions;
+    private Transport webSocket;
+    private volatile Future underlyingFuture;
+    private boolean opened;
+    private boolean settled;
+
+    TransportUpgrade(DefaultSocket socket, StreamTransport from, long drainTimeout) {
+        this.socket = socket;
+        this.from = from;
+        this.drainTimeout = drainTimeout;
+        this.functions = new DeferredFunctions(socket.functions, this);
+    }
+
+    void start(RequestBuilder r) {
+        logger.debug("Upgrading transport {} to {}", from.name(), Request.TRANSPORT.WEBSOCKET);
+        webSocket = socket.newTransport(Request.TRANSPORT.WEBSOCKET, r, functions);
+        webSocket.connectedFuture(new DefaultFuture(socket));
+        try {
+            underlyingFuture = socket.startTransport(webSocket, r);
+        } catch (Throwable e) {
+            onFailure(functions, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOpen(DeferredFunctions functions) {
+        // The WebSocket is opened, drain the previous transport
+        synchronized (this) {
+            if (settled) return;
+            opened = true;
+        }
+
+        boolean draining = from.drain(drainTimeout, new Runnable() {
+            @Override
+            public void run() {
+                upgraded();
+            }
+        });
+        if (!draining) {
+            abort();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onFailure(DeferredFunctions functions, Object cause) {
+        synchronized (this) {
+            // Once opened, the failure is the one of the WebSocket in use
+            if (settled || opened) return;
+            settled = true;
+        }
+        logger.debug("Unable to upgrade transport {}: {}", from.name(), cause);
+        close();
+        socket.transportFailed(Request.TRANSPORT.WEBSOCKET);
+    }
+
+    /**
+     * Abort the upgrade, unless the WebSocket is already used.
+     */
+    void abort() {
+        synchronized (this) {
+            if (settled) return;
+            settled = true;
+        }
+        logger.debug("Aborting the upgrade of transport {}", from.name());
+        close();
+    }
+
+    private void upgraded() {
+        synchronized (this) {
+            if (settled) return;
+            settled = true;
+        }
+        logger.debug("Transport {} upgraded to {}", from.name(), Request.TRANSPORT.WEBSOCKET);
+        socket.transportUpgraded(webSocket);
+        // The socket is already opened
+        functions.drop(Event.OPEN);
+        functions.open();
+    }
+
+    private void close() {
+        functions.discard();
+        // Cancel the pending handshake first, closing the transport completes its future
+        if (underlyingFuture != null) {
+            underlyingFuture.cancel(true);
+        }
+        webSocket.close();
+    }
+}
@@ -18,7 +18,13 @@ package org.atmosphere.wasync.serial;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 import org.asynchttpclient.Response;
 import org.atmosphere.wasync.FunctionWrapper;
@@ -33,6 +39,7 @@ import org.atmosphere.wasync.util.FutureProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 
 /**
@@ -58,27 +65,86 @@ public class SerialSocketRuntime extends SocketRuntime {
             rootFuture.done();
             webSocketWrite(request, object, data);
         } else {
-            // Execute encoder
-            Object encodedPayload = invokeEncoder(request.encoders(), data);
-            if (!(InputStream.class.isAssignableFrom(encodedPayload.getClass())
-                    || Reader.class.isAssignableFrom(encodedPayload.getClass())
-                    || String.class.isAssignableFrom(encodedPayload.getClass())
-                    || byte[].class.isAssignableFrom(encodedPayload.getClass())
-            )) {
-                throw new IllegalStateException("No Encoder for " + data);
-            }
-
             FutureProxy<?> f;
             if (serializedSocket.getSerializedFireStage() != null) {
-                final SettableFuture<Response> future = SettableFuture.create();
-                serializedSocket.getSerializedFireStage().enqueue(encodedPayload, future);
-                f = new FutureProxy(serializedSocket, future);
+                f = new FutureProxy(serializedSocket, enqueue(encode(request, data)));
             } else {
-                f = new FutureProxy(serializedSocket, serializedSocket.directWrite(encodedPayload));
+                f = new FutureProxy(serializedSocket, serializedSocket.directWrite(encode(request, data)));
             }
             transport.future(f);
             return f;
         }
-        return rootFuture.finishOrThrowException();
+        return written();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected CompletableFuture<Void> writeEncodedAsync(Request request, Object object, Object data, boolean flush) {
+        if (WebSocketTransport.class.isAssignableFrom(transport.getClass())) {
+            return super.writeEncodedAsync(request, object, data, flush);
+        }
+
+        final CompletableFuture<Void> written = new CompletableFuture<Void>();
+        try {
+            Object encodedPayload = checkEncoded(object, data);
+            if (serializedSocket.getSerializedFireStage() != null) {
+                final SettableFuture<Response> future = enqueue(encodedPayload);
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            future.get();
+                            written.complete(null);
+                        } catch (ExecutionException e) {
+                            written.completeExceptionally(e.getCause());
+                        } catch (Throwable t) {
+                            written.completeExceptionally(t);
+                        }
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            } else {
+                serializedSocket.directWrite(encodedPayload).toCompletableFuture().whenComplete(new BiConsumer<Response, Throwable>() {
+                    @Override
+                    public void accept(Response r, Throwable t) {
+                        if (t != null) {
+                            written.completeExceptionally(t);
+                        } else {
+                            written.complete(null);
+                        }
+                    }
+                });
+            }
+        } catch (Throwable t) {
+            written.completeExceptionally(t);
+        }
+        return written;
+    }
+
+    private Object encode(Request request, Object data) {
+        // Execute encoder
+        return checkEncoded(invokeEncoder(request.encoders(), data), data);
+    }
+
+    private static Object checkEncoded(Object encodedPayload, Object data) {
+        if (!(InputStream.class.isAssignableFrom(encodedPayload.getClass())
+                || Reader.class.isAssignableFrom(encodedPayload.getClass())
+                || String.class.isAssignableFrom(encodedPayload.getClass())
+                || byte[].class.isAssignableFrom(encodedPayload.getClass())
+                || encodedPayload instanceof ByteBuffer
+                || encodedPayload instanceof CharSequence
+                || encodedPayload instanceof Path
+                || encodedPayload instanceof FileChannel
+        )) {
+            throw new IllegalStateException("No Encoder for " + data);
+        }
+        return encodedPayload;
+    }
+
+    private SettableFuture<Response> enqueue(Object encodedPayload) {
+        SettableFuture<Response> future = SettableFuture.create();
+        serializedSocket.getSerializedFireStage().enqueue(encodedPayload, future);
+        return future;
     }
-}
\ No newline at end of file
+}
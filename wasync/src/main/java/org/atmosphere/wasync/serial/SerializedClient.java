@@ -17,8 +17,11 @@ package org.atmosphere.wasync.serial;
 
 import org.atmosphere.wasync.Client;
 import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.PreparedMessage;
+import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.impl.AtmosphereRequest.AtmosphereRequestBuilder;
+import org.atmosphere.wasync.impl.DefaultPreparedMessage;
 
 /**
  * {@code SerializedClient} is a {@link org.atmosphere.wasync.Client} that guarantees ordered message delivery, in-line with the
@@ -93,6 +96,14 @@ public class SerializedClient implements Client<SerializedOptions, SerializedOpt
         return SerializedRequestBuilder.class.cast(b.resolver(FunctionResolver.DEFAULT));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PreparedMessage prepare(Request request, Object data) {
+        return new DefaultPreparedMessage(request, data);
+    }
+
     public static class SerializedRequestBuilder extends AtmosphereRequestBuilder {
         public SerializedRequestBuilder() {
             super();
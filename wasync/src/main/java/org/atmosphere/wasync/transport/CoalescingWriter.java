@@ -0,0 +1,172 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * Coalesce the messages written to a WebSocket. The frames are written without being flushed, then flushed at once
+ * when the linger time has elapsed or when the batch size is reached, trading latency for fewer system calls.
+ * <p/>
+ * With a delimiter, consecutive text messages are sent as a single text frame, each message being prefixed by its
+ * length and the delimiter, the way the Atmosphere Framework tracks the size of messages, for the server to split them.
+ */
+final class CoalescingWriter {
+
+    private final long linger;
+    private final int batchSize;
+    private final String delimiter;
+
+    private Channel channel;
+    private int bytes;
+    private ScheduledFuture<?> scheduled;
+    private final StringBuilder batch = new StringBuilder();
+    private final List<CompletableFuture<Void>> batched = new ArrayList<CompletableFuture<Void>>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (CoalescingWriter.this) {
+                scheduled = null;
+                flush();
+            }
+        }
+    };
+
+    /**
+     * @param linger    the time, in milliseconds, a written message may wait before being flushed
+     * @param batchSize the number of bytes written that triggers a flush
+     * @param delimiter the delimiter used to batch text messages in a single frame, or null to write a frame per message
+     */
+    CoalescingWriter(long linger, int batchSize, String delimiter) {
+        this.linger = linger;
+        this.batchSize = batchSize;
+        this.delimiter = delimiter;
+    }
+
+    synchronized CompletableFuture<Void> write(Channel channel, String message) {
+        use(channel);
+        if (delimiter == null) {
+            return write(new TextWebSocketFrame(message));
+        }
+
+        CompletableFuture<Void> written = new CompletableFuture<Void>();
+        batch.append(message.length()).append(delimiter).append(message);
+        batched.add(written);
+        // An upper bound, as the batch is encoded using UTF-8
+        bytes += message.length() * 3;
+        flushIfNeeded();
+        return written;
+    }
+
+    synchronized CompletableFuture<Void> write(Channel channel, byte[] message) {
+        return write(channel, new BinaryWebSocketFrame(Unpooled.wrappedBuffer(message)));
+    }
+
+    synchronized CompletableFuture<Void> write(Channel channel, WebSocketFrame frame) {
+        use(channel);
+        // Keep the order of the messages
+        writeBatch();
+        return write(frame);
+    }
+
+    /**
+     * Flush the messages written.
+     */
+    synchronized void flush() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        writeBatch();
+        bytes = 0;
+        if (channel != null) {
+            channel.flush();
+        }
+    }
+
+    private void use(Channel channel) {
+        if (this.channel != channel) {
+            // Reconnected, what was written using the previous channel is sent, or fails
+            flush();
+            this.channel = channel;
+        }
+    }
+
+    private CompletableFuture<Void> write(WebSocketFrame frame) {
+        bytes += frame.content().readableBytes();
+        CompletableFuture<Void> written = completion(channel.write(frame));
+        flushIfNeeded();
+        return written;
+    }
+
+    private void writeBatch() {
+        if (batched.isEmpty()) return;
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(batched);
+        channel.write(new TextWebSocketFrame(Unpooled.copiedBuffer(batch, StandardCharsets.UTF_8)))
+                .addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        for (CompletableFuture<Void> f : futures) {
+                            complete(f, future);
+                        }
+                    }
+                });
+        batch.setLength(0);
+        batched.clear();
+    }
+
+    private void flushIfNeeded() {
+        if (bytes >= batchSize) {
+            flush();
+        } else if (scheduled == null) {
+            scheduled = channel.eventLoop().schedule(flushTask, linger, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static CompletableFuture<Void> completion(ChannelFuture f) {
+        final CompletableFuture<Void> written = new CompletableFuture<Void>();
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                complete(written, future);
+            }
+        });
+        return written;
+    }
+
+    private static void complete(CompletableFuture<Void> written, ChannelFuture future) {
+        if (future.isSuccess()) {
+            written.complete(null);
+        } else {
+            written.completeExceptionally(future.cause());
+        }
+    }
+}
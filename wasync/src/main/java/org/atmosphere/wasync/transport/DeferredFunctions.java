@@ -0,0 +1,167 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.FunctionWrapper;
+
+/**
+ * The {@link FunctionWrapper}s of a {@link org.atmosphere.wasync.Transport} which may not be used. Until {@link #open()}
+ * is called, {@link TransportsUtil#invokeFunction(Event, List, List, Class, Object, String, org.atmosphere.wasync.FunctionResolver)}
+ * neither decodes nor dispatches the events of the transport, but defers them. Once opened, the deferred events are
+ * replayed, in order. Once discarded, the events are dropped.
+ */
+public class DeferredFunctions extends AbstractList<FunctionWrapper> {
+
+    /**
+     * Notified when the transport opened or failed, before being opened.
+     */
+    public interface Listener {
+        void onOpen(DeferredFunctions functions);
+
+        void onFailure(DeferredFunctions functions, Object cause);
+    }
+
+    private final static class Deferred {
+        final Event event;
+        final Runnable dispatch;
+
+        Deferred(Event event, Runnable dispatch) {
+            this.event = event;
+            this.dispatch = dispatch;
+        }
+    }
+
+    private final List<FunctionWrapper> functions;
+    private final Listener listener;
+    private final List<Deferred> deferred = new ArrayList<Deferred>();
+    private boolean opened;
+    private boolean discarded;
+    private boolean failed;
+
+    public DeferredFunctions(List<FunctionWrapper> functions, Listener listener) {
+        this.functions = functions;
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FunctionWrapper get(int index) {
+        return functions.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return functions.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(FunctionWrapper functionWrapper) {
+        return functions.add(functionWrapper);
+    }
+
+    /**
+     * Defer an event unless opened.
+     *
+     * @param e        the {@link Event}
+     * @param instance the event's object
+     * @param dispatch the dispatch of the event
+     * @return false if opened, and the event must be dispatched
+     */
+    boolean defer(Event e, Object instance, Runnable dispatch) {
+        boolean failure = false;
+        synchronized (this) {
+            if (opened) return false;
+
+            if (!discarded) {
+                deferred.add(new Deferred(e, dispatch));
+            }
+
+            if (!failed && (Event.ERROR.equals(e) || instance instanceof Throwable)) {
+                failed = failure = true;
+            }
+        }
+
+        if (listener != null) {
+            if (failure) {
+                listener.onFailure(this, instance);
+            } else if (Event.OPEN.equals(e)) {
+                listener.onOpen(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Has the transport failed.
+     *
+     * @return true if an error has been deferred
+     */
+    public synchronized boolean failed() {
+        return failed;
+    }
+
+    /**
+     * Replay the deferred events and dispatch all new events.
+     */
+    public synchronized void open() {
+        if (opened) return;
+
+        // Events of other threads wait for the replay to complete, the replay itself is dispatched
+        opened = true;
+        discarded = false;
+        for (Deferred d : deferred) {
+            d.dispatch.run();
+        }
+        deferred.clear();
+    }
+
+    /**
+     * Drop the deferred events of a type.
+     *
+     * @param e the {@link Event}
+     */
+    public synchronized void drop(Event e) {
+        for (Iterator<Deferred> i = deferred.iterator(); i.hasNext(); ) {
+            if (i.next().event.equals(e)) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop the deferred events and all new events.
+     */
+    public synchronized void discard() {
+        if (opened) return;
+
+        discarded = true;
+        deferred.clear();
+    }
+}
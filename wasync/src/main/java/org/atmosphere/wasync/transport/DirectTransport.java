@@ -0,0 +1,43 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.IOException;
+
+import org.atmosphere.wasync.Transport;
+
+/**
+ * A {@link Transport} connecting and writing by itself, instead of being driven by the AHC runtime of the
+ * {@link org.atmosphere.wasync.Socket}.
+ */
+public interface DirectTransport extends Transport {
+
+    /**
+     * Connect. The {@link Transport} dispatches the {@link org.atmosphere.wasync.Event}s and completes the connected
+     * {@link org.atmosphere.wasync.Future}, synchronously or not.
+     *
+     * @throws IOException if unable to connect
+     */
+    void connect() throws IOException;
+
+    /**
+     * Write a message.
+     *
+     * @param message the encoded message: a String, byte[], {@link java.io.InputStream} or {@link java.io.Reader}
+     * @throws IOException if unable to write
+     */
+    void write(Object message) throws IOException;
+}
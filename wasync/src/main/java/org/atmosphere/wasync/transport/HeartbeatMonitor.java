@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.impl.AtmosphereRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-idle timer used by {@link org.atmosphere.wasync.Transport} to detect stalled connections. Transports invoke
+ * {@link #touch()} every time bytes are received and the monitor invokes its callback once nothing has been read for
+ * a multiple of the heartbeat interval advertised by the server.
+ */
+public class HeartbeatMonitor {
+
+    private final static Logger logger = LoggerFactory.getLogger(HeartbeatMonitor.class);
+
+    private final ScheduledExecutorService timer;
+    private final Runnable onTimeout;
+    private volatile long lastRead = System.nanoTime();
+    private volatile ScheduledFuture<?> checker;
+
+    public HeartbeatMonitor(ScheduledExecutorService timer, Runnable onTimeout) {
+        this.timer = timer;
+        this.onTimeout = onTimeout;
+    }
+
+    /**
+     * Record that bytes have been received.
+     */
+    public void touch() {
+        lastRead = System.nanoTime();
+    }
+
+    /**
+     * Start monitoring the connection. This method is a no-op if the monitor is already armed or if the interval
+     * or the number of missed heartbeats aren't positive.
+     *
+     * @param intervalInMilliseconds the heartbeat interval, in milliseconds
+     * @param missedHeartbeats       the number of intervals without read before the callback is invoked
+     * @return true if the monitor is armed
+     */
+    public boolean arm(final long intervalInMilliseconds, int missedHeartbeats) {
+        if (checker != null) return true;
+        if (intervalInMilliseconds <= 0 || missedHeartbeats <= 0) return false;
+
+        synchronized (this) {
+            if (checker != null) return true;
+
+            final long timeout = TimeUnit.MILLISECONDS.toNanos(intervalInMilliseconds * missedHeartbeats);
+            touch();
+            try {
+                checker = timer.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (System.nanoTime() - lastRead < timeout) return;
+
+                        logger.debug("Nothing received within {}ms, connection is stalled", TimeUnit.NANOSECONDS.toMillis(timeout));
+                        touch();
+                        try {
+                            onTimeout.run();
+                        } catch (Exception ex) {
+                            logger.warn("", ex);
+                        }
+                    }
+                }, intervalInMilliseconds, intervalInMilliseconds, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                logger.trace("", ex);
+                return false;
+            }
+            logger.debug("Heartbeat monitor armed with an interval of {}ms", intervalInMilliseconds);
+            return true;
+        }
+    }
+
+    /**
+     * Stop monitoring the connection.
+     */
+    public synchronized void disarm() {
+        if (checker != null) {
+            checker.cancel(false);
+            checker = null;
+        }
+    }
+
+    /**
+     * Return true if the monitor is armed.
+     *
+     * @return true if the monitor is armed.
+     */
+    public boolean isArmed() {
+        return checker != null;
+    }
+
+    /**
+     * Return the heartbeat interval advertised by the server for this {@link Request}.
+     *
+     * @param request the {@link Request}
+     * @return the heartbeat interval, in milliseconds, or -1 if unknown.
+     */
+    public static long heartbeatInterval(Request request) {
+        if (request instanceof AtmosphereRequest) {
+            return ((AtmosphereRequest) request).getHeartbeatInterval();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.SSLException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.asynchttpclient.uri.Uri;
+import org.atmosphere.wasync.util.NettyResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP/2 connections used by the {@link Http2Transport}. Every {@link org.atmosphere.wasync.Socket} connected to
+ * the same scheme, host and port shares a single connection, each socket using its own streams. A new connection is
+ * only opened once {@link #maxStreamsPerConnection()} sockets share the existing ones, or once the sockets sharing
+ * them would use more than three quarters of the server's SETTINGS_MAX_CONCURRENT_STREAMS, the remaining streams
+ * being left to the writes. A stream is only opened while the server's limit isn't reached, else once another stream
+ * has been closed. Secure connections negotiate HTTP/2 using ALPN, and fail if the server doesn't select it. Plain
+ * connections use HTTP/2 with prior knowledge (h2c).
+ */
+public class Http2ConnectionPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(Http2ConnectionPool.class);
+
+    public final static int DEFAULT_MAX_STREAMS_PER_CONNECTION = 100;
+
+    private final static Http2ConnectionPool DEFAULT = new Http2ConnectionPool(DEFAULT_MAX_STREAMS_PER_CONNECTION);
+
+    // Push promises are disabled
+    private final static ChannelHandler PUSH_HANDLER = new PushHandler();
+
+    private final int maxStreamsPerConnection;
+    private final Map<String, List<Connection>> connections = new HashMap<String, List<Connection>>();
+    private SslContext sslContext;
+
+    /**
+     * Create a pool.
+     *
+     * @param maxStreamsPerConnection the maximum number of sockets sharing a connection, lowered according to the
+     *                                SETTINGS_MAX_CONCURRENT_STREAMS of the server once received
+     */
+    public Http2ConnectionPool(int maxStreamsPerConnection) {
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+    }
+
+    /**
+     * The pool shared by every {@link Http2Transport}.
+     *
+     * @return the pool shared by every {@link Http2Transport}
+     */
+    public static Http2ConnectionPool getDefault() {
+        return DEFAULT;
+    }
+
+    public int maxStreamsPerConnection() {
+        return maxStreamsPerConnection;
+    }
+
+    /**
+     * Acquire a connection to the server of the uri. The connection must be released using {@link Connection#release()}.
+     *
+     * @param uri the uri
+     * @return a {@link Connection}
+     */
+    public synchronized Connection acquire(Uri uri) {
+        String key = key(uri);
+        List<Connection> l = connections.get(key);
+        if (l == null) {
+            l = new ArrayList<Connection>();
+            connections.put(key, l);
+        }
+
+        for (Connection c : l) {
+            if (c.references < c.maxSockets()) {
+                c.references++;
+                return c;
+            }
+        }
+
+        Connection c = new Connection(key, uri.getHost(), port(uri), uri.isSecured());
+        c.references++;
+        l.add(c);
+        return c;
+    }
+
+    /**
+     * The number of connections opened, or being opened.
+     *
+     * @return the number of connections
+     */
+    public synchronized int connections() {
+        int count = 0;
+        for (List<Connection> l : connections.values()) {
+            count += l.size();
+        }
+        return count;
+    }
+
+    synchronized void release(Connection c) {
+        if (--c.references > 0) return;
+
+        List<Connection> l = connections.get(c.key);
+        if (l != null) {
+            l.remove(c);
+            if (l.isEmpty()) {
+                connections.remove(c.key);
+            }
+        }
+        c.close();
+    }
+
+    synchronized Future<Channel> connect(final String host, final int port, boolean secured) throws SSLException {
+        final SslContext ssl = secured ? sslContext() : null;
+        // Streams can only be opened once the connection preface has been sent, when the channel becomes active
+        final Promise<Channel> ready = ImmediateEventExecutor.INSTANCE.newPromise();
+        new Bootstrap()
+                .group(NettyResources.eventLoopGroup())
+                .channel(NettyResources.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.ALLOCATOR, NettyResources.allocator())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        if (ssl == null) {
+                            http2(ch.pipeline());
+                            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelActive(ChannelHandlerContext ctx) {
+                                    ctx.pipeline().remove(this);
+                                    ready.trySuccess(ctx.channel());
+                                    ctx.fireChannelActive();
+                                }
+                            });
+                            return;
+                        }
+
+                        ch.pipeline().addLast(ssl.newHandler(ch.alloc(), host, port),
+                                new ApplicationProtocolNegotiationHandler("") {
+                                    @Override
+                                    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                                        if (!ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                                            // Let the transport fall back instead of speaking HTTP/2 to an HTTP/1.1 server
+                                            ready.tryFailure(new IOException("HTTP/2 not negotiated by " + host + ":" + port
+                                                    + (protocol.isEmpty() ? "" : ", selected " + protocol)));
+                                            ctx.close();
+                                            return;
+                                        }
+                                        http2(ctx.pipeline());
+                                        ready.trySuccess(ctx.channel());
+                                    }
+
+                                    @Override
+                                    protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) {
+                                        ready.tryFailure(cause);
+                                        ctx.close();
+                                    }
+                                });
+                    }
+                })
+                .connect(host, port)
+                .addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            ready.tryFailure(future.cause());
+                        }
+                    }
+                });
+        return ready;
+    }
+
+    private static void http2(ChannelPipeline pipeline) {
+        pipeline.addLast(
+                Http2FrameCodecBuilder.forClient()
+                        .initialSettings(Http2Settings.defaultSettings().pushEnabled(false))
+                        .build(),
+                new Http2MultiplexHandler(PUSH_HANDLER));
+    }
+
+    /**
+     * The number of streams the server allows the client to open at once.
+     */
+    private static int maxActiveStreams(Channel channel) {
+        Http2FrameCodec codec = channel.pipeline().get(Http2FrameCodec.class);
+        return codec == null ? Integer.MAX_VALUE : codec.connection().local().maxActiveStreams();
+    }
+
+    private SslContext sslContext() throws SSLException {
+        if (sslContext == null) {
+            sslContext = SslContextBuilder.forClient()
+                    .applicationProtocolConfig(new ApplicationProtocolConfig(
+                            ApplicationProtocolConfig.Protocol.ALPN,
+                            ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                            ApplicationProtocolConfig.SelectedListenerFailureBehavior.FATAL_ALERT,
+                            ApplicationProtocolNames.HTTP_2))
+                    .build();
+        }
+        return sslContext;
+    }
+
+    private static String key(Uri uri) {
+        return (uri.isSecured() ? "https://" : "http://") + uri.getHost() + ":" + port(uri);
+    }
+
+    private static int port(Uri uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = uri.isSecured() ? 443 : 80;
+        }
+        return port;
+    }
+
+    @ChannelHandler.Sharable
+    private final static class PushHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+        }
+    }
+
+    private final static class PendingStream {
+        final Channel parent;
+        final ChannelHandler handler;
+        final Promise<Http2StreamChannel> stream;
+
+        PendingStream(Channel parent, ChannelHandler handler, Promise<Http2StreamChannel> stream) {
+            this.parent = parent;
+            this.handler = handler;
+            this.stream = stream;
+        }
+    }
+
+    /**
+     * A connection shared by many sockets.
+     */
+    public final class Connection {
+
+        private final String key;
+        private final String host;
+        private final int port;
+        private final boolean secured;
+        private int references;
+        private Future<Channel> channel;
+        private boolean closed;
+        private int activeStreams;
+        private final ArrayDeque<PendingStream> pendingStreams = new ArrayDeque<PendingStream>();
+
+        Connection(String key, String host, int port, boolean secured) {
+            this.key = key;
+            this.host = host;
+            this.port = port;
+            this.secured = secured;
+        }
+
+        /**
+         * The connection's channel, connected again if the server closed it.
+         *
+         * @return the {@link Channel} of the connection, once connected
+         * @throws SSLException if the SSL context can't be created
+         */
+        public Future<Channel> channel() throws SSLException {
+            synchronized (Http2ConnectionPool.this) {
+                if (closed) {
+                    throw new IllegalStateException("Connection to " + key + " released");
+                }
+
+                if (channel == null || (channel.isDone() && (!channel.isSuccess() || !channel.getNow().isActive()))) {
+                    logger.debug("Opening HTTP/2 connection to {}", key);
+                    channel = connect(host, port, secured);
+                    // The streams of the previous channel are gone
+                    activeStreams = 0;
+                    failPendingStreams(new ClosedChannelException());
+                }
+                return channel;
+            }
+        }
+
+        /**
+         * Open a stream of the connection's channel, once the number of streams opened is below the server's
+         * SETTINGS_MAX_CONCURRENT_STREAMS.
+         *
+         * @param parent  the connection's channel, see {@link #channel()}
+         * @param handler the handler of the stream
+         * @return the stream, once opened
+         */
+        public Future<Http2StreamChannel> openStream(Channel parent, ChannelHandler handler) {
+            Promise<Http2StreamChannel> stream = parent.eventLoop().newPromise();
+            synchronized (Http2ConnectionPool.this) {
+                if (activeStreams >= maxActiveStreams(parent)) {
+                    logger.trace("Waiting for a stream of {}, {} opened", key, activeStreams);
+                    pendingStreams.add(new PendingStream(parent, handler, stream));
+                    return stream;
+                }
+                activeStreams++;
+            }
+            open(parent, handler, stream);
+            return stream;
+        }
+
+        private void open(final Channel parent, ChannelHandler handler, final Promise<Http2StreamChannel> stream) {
+            new Http2StreamChannelBootstrap(parent).handler(handler).open()
+                    .addListener(new GenericFutureListener<Future<Http2StreamChannel>>() {
+                        @Override
+                        public void operationComplete(Future<Http2StreamChannel> f) {
+                            if (!f.isSuccess()) {
+                                streamClosed(parent);
+                                stream.tryFailure(f.cause());
+                                return;
+                            }
+
+                            f.getNow().closeFuture().addListener(new ChannelFutureListener() {
+                                @Override
+                                public void operationComplete(ChannelFuture future) {
+                                    streamClosed(parent);
+                                }
+                            });
+                            if (!stream.trySuccess(f.getNow())) {
+                                f.getNow().close();
+                            }
+                        }
+                    });
+        }
+
+        private void streamClosed(Channel parent) {
+            final PendingStream next;
+            synchronized (Http2ConnectionPool.this) {
+                // A stream of a previous channel
+                if (channel == null || !channel.isSuccess() || channel.getNow() != parent) return;
+
+                next = pendingStreams.poll();
+                if (next == null) {
+                    activeStreams--;
+                    return;
+                }
+            }
+            // The codec may deactivate the closed stream once the current event has been processed
+            parent.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    open(next.parent, next.handler, next.stream);
+                }
+            });
+        }
+
+        private void failPendingStreams(Throwable t) {
+            PendingStream p;
+            while ((p = pendingStreams.poll()) != null) {
+                p.stream.tryFailure(t);
+            }
+        }
+
+        /**
+         * The number of sockets which may share the connection, leaving a quarter of the server's
+         * SETTINGS_MAX_CONCURRENT_STREAMS, at least one stream, to the writes.
+         */
+        int maxSockets() {
+            if (channel == null || !channel.isSuccess()) {
+                return maxStreamsPerConnection;
+            }
+            int streams = maxActiveStreams(channel.getNow());
+            return Math.min(maxStreamsPerConnection, Math.max(1, streams - Math.max(1, streams / 4)));
+        }
+
+        /**
+         * Release the connection. It is closed once every socket sharing it released it.
+         */
+        public void release() {
+            Http2ConnectionPool.this.release(this);
+        }
+
+        void close() {
+            closed = true;
+            failPendingStreams(new ClosedChannelException());
+            if (channel != null) {
+                logger.debug("Closing HTTP/2 connection to {}", key);
+                channel.addListener(new GenericFutureListener<Future<Channel>>() {
+                    @Override
+                    public void operationComplete(Future<Channel> future) {
+                        if (future.isSuccess()) {
+                            future.getNow().close();
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.uri.Uri;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.util.ReaderInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A streaming {@link org.atmosphere.wasync.Transport} over HTTP/2. The {@link org.atmosphere.wasync.Socket} is
+ * mapped to a single HTTP/2 stream, which stays open like a {@link StreamTransport} request, and every write
+ * uses an additional stream. The connection is shared with every other socket connected to the same server,
+ * see {@link Http2ConnectionPool}.
+ * <p/>
+ * This transport is built on Netty's HTTP/2 codec, the {@link org.asynchttpclient.AsyncHttpClient} is only used to
+ * build the requests.
+ */
+public class Http2Transport extends StreamTransport {
+
+    private final static Logger logger = LoggerFactory.getLogger(Http2Transport.class);
+
+    private final Http2ConnectionPool pool;
+    private volatile Http2ConnectionPool.Connection connection;
+    private volatile Channel stream;
+
+    public Http2Transport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
+        this(Http2ConnectionPool.getDefault(), requestBuilder, options, request, functions);
+    }
+
+    public Http2Transport(Http2ConnectionPool pool, RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
+        super(requestBuilder, options, request, functions);
+        this.pool = pool;
+    }
+
+    /**
+     * Open the stream.
+     */
+    public void connect() {
+        org.asynchttpclient.Request r = reconnectRequest();
+        connection = pool.acquire(r.getUri());
+        openStream(r);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void reconnect() {
+        openStream(reconnectRequest());
+    }
+
+    /**
+     * Write a message using a new stream of the connection.
+     *
+     * @param template the request, without its body
+     * @param body     a String, byte[], {@link InputStream} or {@link Reader}, or a {@link Path} or {@link FileChannel},
+     *                 which is sent as {@link WebSocketTransport#FRAGMENT_SIZE} bytes DATA frames, each read once the
+     *                 stream's flow-control window allows it to be written
+     * @return the response's body
+     * @throws IOException if the body can't be read
+     */
+    public CompletableFuture<String> write(org.asynchttpclient.Request template, Object body) throws IOException {
+        final Object content;
+        final long length;
+        if (body instanceof Path || body instanceof FileChannel) {
+            FileDataInput input = body instanceof Path ? new FileDataInput((Path) body) : new FileDataInput((FileChannel) body);
+            content = input;
+            length = input.length();
+        } else {
+            ByteBuf b = body(body, template.getCharset() == null ? StandardCharsets.UTF_8 : template.getCharset());
+            content = b;
+            length = b.readableBytes();
+        }
+        final Http2Headers headers = headers(template).setLong(HttpHeaderNames.CONTENT_LENGTH, length);
+        final CompletableFuture<String> response = new CompletableFuture<String>();
+
+        final ResponseHandler handler = new ResponseHandler(response);
+        open(handler, new GenericFutureListener<Future<Http2StreamChannel>>() {
+            @Override
+            public void operationComplete(Future<Http2StreamChannel> f) {
+                if (!f.isSuccess()) {
+                    discard(content);
+                    response.completeExceptionally(f.cause());
+                    return;
+                }
+
+                Http2StreamChannel s = f.getNow();
+                s.write(new DefaultHttp2HeadersFrame(headers, false));
+                ChannelFuture written;
+                if (content instanceof ByteBuf) {
+                    written = s.writeAndFlush(new DefaultHttp2DataFrame((ByteBuf) content, true));
+                } else {
+                    // Writes the frames while the stream is writable
+                    s.pipeline().addFirst(new ChunkedWriteHandler());
+                    written = s.writeAndFlush(content);
+                }
+                written.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            response.completeExceptionally(future.cause());
+                            future.channel().close();
+                        }
+                    }
+                });
+            }
+        }, response);
+        return response;
+    }
+
+    private void openStream(org.asynchttpclient.Request r) {
+        final Http2Headers headers = headers(r);
+        final StreamHandler handler = new StreamHandler();
+        open(handler, new GenericFutureListener<Future<Http2StreamChannel>>() {
+            @Override
+            public void operationComplete(Future<Http2StreamChannel> f) {
+                if (!f.isSuccess()) {
+                    onThrowable(f.cause());
+                    return;
+                }
+
+                Http2StreamChannel s = f.getNow();
+                stream = s;
+                if (closed.get()) {
+                    s.close();
+                    return;
+                }
+                s.writeAndFlush(new DefaultHttp2HeadersFrame(headers, true)).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            onThrowable(future.cause());
+                        }
+                    }
+                });
+            }
+        }, null);
+    }
+
+    private void open(final ChannelInboundHandlerAdapter handler,
+                      final GenericFutureListener<Future<Http2StreamChannel>> listener,
+                      final CompletableFuture<?> response) {
+        final Http2ConnectionPool.Connection c = connection;
+        if (c == null) {
+            throw new IllegalStateException("Not connected");
+        }
+
+        final Future<Channel> connect;
+        try {
+            connect = c.channel();
+        } catch (IOException e) {
+            fail(e, response);
+            return;
+        }
+
+        connect.addListener(new GenericFutureListener<Future<Channel>>() {
+            @Override
+            public void operationComplete(Future<Channel> future) {
+                if (!future.isSuccess()) {
+                    fail(future.cause(), response);
+                    return;
+                }
+                c.openStream(future.getNow(), handler).addListener(listener);
+            }
+        });
+    }
+
+    private void fail(Throwable t, CompletableFuture<?> response) {
+        if (response != null) {
+            response.completeExceptionally(t);
+        } else {
+            onThrowable(t);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onHeartbeatTimeout() {
+        Channel s = stream;
+        stream = null;
+        if (s != null) s.close();
+        super.onHeartbeatTimeout();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        boolean wasClosed = closed.get();
+        super.close();
+        if (wasClosed) return;
+
+        Channel s = stream;
+        stream = null;
+        if (s != null) s.close();
+
+        Http2ConnectionPool.Connection c = connection;
+        connection = null;
+        if (c != null) c.release();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Request.TRANSPORT name() {
+        return Request.TRANSPORT.HTTP2;
+    }
+
+    static Http2Headers headers(org.asynchttpclient.Request r) {
+        Uri uri = r.getUri();
+        Http2Headers headers = new DefaultHttp2Headers()
+                .method(r.getMethod())
+                .scheme(uri.isSecured() ? "https" : "http")
+                .authority(uri.getAuthority())
+                .path(uri.toRelativeUrl());
+
+        for (Map.Entry<String, String> e : r.getHeaders()) {
+            String name = e.getKey().toLowerCase(Locale.ENGLISH);
+            // Connection specific headers are not allowed
+            if (name.equals("connection") || name.equals("keep-alive") || name.equals("proxy-connection")
+                    || name.equals("transfer-encoding") || name.equals("upgrade") || name.equals("host")) {
+                continue;
+            }
+            headers.add(name, e.getValue());
+        }
+        return headers;
+    }
+
+    static ByteBuf body(Object body, Charset charset) throws IOException {
+        if (body instanceof String) {
+            return Unpooled.wrappedBuffer(((String) body).getBytes(charset));
+        } else if (body instanceof byte[]) {
+            return Unpooled.wrappedBuffer((byte[]) body);
+        } else if (body instanceof ByteBuffer) {
+            return Unpooled.wrappedBuffer((ByteBuffer) body);
+        } else if (body instanceof CharSequence) {
+            return Unpooled.copiedBuffer((CharSequence) body, charset);
+        } else if (body instanceof InputStream || body instanceof Reader) {
+            InputStream stream = body instanceof Reader ? new ReaderInputStream((Reader) body) : (InputStream) body;
+            ByteBuf b = Unpooled.buffer(WebSocketTransport.FRAGMENT_SIZE);
+            try {
+                while (b.writeBytes(stream, WebSocketTransport.FRAGMENT_SIZE) != -1) {
+                    b.ensureWritable(WebSocketTransport.FRAGMENT_SIZE);
+                }
+            } catch (IOException e) {
+                b.release();
+                throw e;
+            }
+            return b;
+        }
+        throw new IllegalStateException("No Encoder for " + body);
+    }
+
+    private static void discard(Object content) {
+        if (content instanceof FileDataInput) {
+            ((FileDataInput) content).close();
+        } else {
+            ReferenceCountUtil.release(content);
+        }
+    }
+
+    /**
+     * The DATA frames of a file sent from the position of its {@link FileChannel} to its end, read using positional
+     * reads so the position doesn't change. The channel is only closed if opened from a {@link Path}.
+     */
+    private final static class FileDataInput implements ChunkedInput<Http2DataFrame> {
+
+        private final FileChannel channel;
+        private final boolean opened;
+        private final ChunkedNioFile file;
+        private boolean endStream;
+
+        FileDataInput(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ), true);
+        }
+
+        FileDataInput(FileChannel channel) throws IOException {
+            this(channel, false);
+        }
+
+        private FileDataInput(FileChannel channel, boolean opened) throws IOException {
+            this.channel = channel;
+            this.opened = opened;
+            try {
+                long position = channel.position();
+                file = new ChunkedNioFile(channel, position, channel.size() - position, WebSocketTransport.FRAGMENT_SIZE);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean isEndOfInput() throws Exception {
+            return endStream;
+        }
+
+        @Override
+        @Deprecated
+        public Http2DataFrame readChunk(ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public Http2DataFrame readChunk(ByteBufAllocator allocator) throws Exception {
+            if (endStream) return null;
+
+            ByteBuf b = file.isEndOfInput() ? Unpooled.EMPTY_BUFFER : file.readChunk(allocator);
+            endStream = file.isEndOfInput();
+            return new DefaultHttp2DataFrame(b, endStream);
+        }
+
+        @Override
+        public long length() {
+            return file.length();
+        }
+
+        @Override
+        public long progress() {
+            return file.progress();
+        }
+
+        @Override
+        public void close() {
+            // ChunkedNioFile would close the channel
+            if (opened) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.trace("", e);
+                }
+            }
+        }
+    }
+
+    private static HttpHeaders toHttpHeaders(Http2Headers headers) {
+        HttpHeaders h = new DefaultHttpHeaders(false);
+        for (Map.Entry<CharSequence, CharSequence> e : headers) {
+            if (e.getKey().length() > 0 && e.getKey().charAt(0) == ':') continue;
+            h.add(e.getKey(), e.getValue());
+        }
+        return h;
+    }
+
+    private static int statusCode(Http2Headers headers) {
+        CharSequence status = headers.status();
+        try {
+            return status == null ? 0 : Integer.parseInt(status.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Dispatch the frames of the stream to the {@link StreamTransport}.
+     */
+    private final class StreamHandler extends ChannelInboundHandlerAdapter {
+
+        private boolean statusReceived;
+        private boolean ended;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            try {
+                // A stream replaced after a heartbeat timeout
+                if (ended || stream != ctx.channel()) return;
+
+                if (msg instanceof Http2HeadersFrame) {
+                    Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+                    if (!statusReceived) {
+                        statusReceived = true;
+                        onStatusReceived(new Status(request.uri(), statusCode(frame.headers()), ctx.channel().parent()));
+                        onHeadersReceived(toHttpHeaders(frame.headers()));
+                    }
+                    if (frame.isEndStream()) end();
+                } else if (msg instanceof Http2DataFrame) {
+                    Http2DataFrame frame = (Http2DataFrame) msg;
+                    if (frame.content().isReadable()) {
+                        onBodyPartReceived(new BodyPart(ByteBufUtil.getBytes(frame.content())));
+                    }
+                    if (frame.isEndStream()) end();
+                } else if (msg instanceof Http2ResetFrame) {
+                    end();
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (!ended && stream == ctx.channel()) end();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (stream == ctx.channel()) onThrowable(cause);
+            ctx.close();
+        }
+
+        private void end() throws Exception {
+            ended = true;
+            try {
+                onCompleted();
+            } catch (Exception e) {
+                logger.warn("", e);
+            }
+        }
+    }
+
+    /**
+     * Aggregate the response to a write.
+     */
+    private final static class ResponseHandler extends ChannelInboundHandlerAdapter {
+
+        private final CompletableFuture<String> response;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        ResponseHandler(CompletableFuture<String> response) {
+            this.response = response;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                boolean endStream = false;
+                if (msg instanceof Http2HeadersFrame) {
+                    endStream = ((Http2HeadersFrame) msg).isEndStream();
+                } else if (msg instanceof Http2DataFrame) {
+                    Http2DataFrame frame = (Http2DataFrame) msg;
+                    ByteBuf content = frame.content();
+                    content.readBytes(body, content.readableBytes());
+                    endStream = frame.isEndStream();
+                } else if (msg instanceof Http2ResetFrame) {
+                    response.completeExceptionally(new IOException("Stream reset: " + ((Http2ResetFrame) msg).errorCode()));
+                    ctx.close();
+                }
+
+                if (endStream) {
+                    response.complete(new String(body.toByteArray(), StandardCharsets.UTF_8));
+                    ctx.close();
+                }
+            } catch (IOException e) {
+                response.completeExceptionally(e);
+                ctx.close();
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            response.completeExceptionally(new IOException("Stream closed"));
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            response.completeExceptionally(cause);
+            ctx.close();
+        }
+    }
+
+    private final static class Status extends HttpResponseStatus {
+
+        private final int statusCode;
+        private final Channel channel;
+
+        Status(String uri, int statusCode, Channel channel) {
+            super(Uri.create(uri));
+            this.statusCode = statusCode;
+            this.channel = channel;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return io.netty.handler.codec.http.HttpResponseStatus.valueOf(statusCode).reasonPhrase();
+        }
+
+        @Override
+        public String getProtocolName() {
+            return "HTTP";
+        }
+
+        @Override
+        public int getProtocolMajorVersion() {
+            return 2;
+        }
+
+        @Override
+        public int getProtocolMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public String getProtocolText() {
+            return "HTTP/2.0";
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return channel.remoteAddress();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return channel.localAddress();
+        }
+    }
+
+    private final static class BodyPart extends HttpResponseBodyPart {
+
+        private final byte[] bytes;
+
+        BodyPart(byte[] bytes) {
+            super(false);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] getBodyPartBytes() {
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer getBodyByteBuffer() {
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+}
@@ -17,12 +17,18 @@ package org.atmosphere.wasync.transport;
 
 import static org.atmosphere.wasync.Event.MESSAGE;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.RequestBuilder;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Options;
@@ -44,23 +50,28 @@ public class LongPollingTransport extends StreamTransport {
      */
     private final AtomicBoolean handshakeOccurred = new AtomicBoolean(true);
     private int count = 0;
+    private final int pipelinedPolls;
+    private final AtomicInteger waitingPolls = new AtomicInteger();
+    private final AtomicBoolean firstResponse = new AtomicBoolean(true);
+    private final Set<ListenableFuture<String>> polls = Collections.newSetFromMap(new ConcurrentHashMap<ListenableFuture<String>, Boolean>());
 
     public LongPollingTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
         super(requestBuilder, options, request, functions);
         List<String> protocol = request.queryString().get("X-atmo-protocol");
         List<String> transport = request.queryString().get("X-Atmosphere-Transport");
+        // The transport may not be the request's preferred one when transports are raced
         if (protocol != null && transport != null
-                && protocol.get(0).equals("true")
-                && transport.get(0).equals("long-polling")) {
+                && protocol.get(0).equals("true")) {
             handshakeOccurred.set(false);
         }
+        pipelinedPolls = options.reconnect() ? options.pipelinedPolls() : 0;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public State onHeadersReceived(HttpHeaders headers) throws Exception {
+    public synchronized State onHeadersReceived(HttpHeaders headers) throws Exception {
         if (handshakeOccurred.get()) {
             return super.onHeadersReceived(headers);
         }
@@ -71,7 +82,13 @@ public class LongPollingTransport extends StreamTransport {
      * {@inheritDoc}
      */
     @Override
-    public State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+    public synchronized State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        // The response of the initial request started, the next polls can be issued. With the Atmosphere Protocol,
+        // they must wait for the tracking id, else the server would create another resource for them.
+        if (!protocolEnabled) {
+            firstResponseStarted();
+        }
+
         if (handshakeOccurred.get()) {
             // onOpen only called once
             if (protocolEnabled && ++count == 1) {
@@ -82,8 +99,103 @@ public class LongPollingTransport extends StreamTransport {
         return State.CONTINUE;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String onCompleted() throws Exception {
+        if (pipelinedPolls <= 0) {
+            return super.onCompleted();
+        }
+
+        // The next polls have already been issued, so neither close nor reconnect.
+        futureDone();
+        if (!detach() && !closed.get() && status != Socket.STATUS.ERROR) {
+            firstResponse.set(false);
+            fillPipeline();
+        }
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void reconnect() {
+        if (pipelinedPolls <= 0) {
+            super.reconnect();
+            return;
+        }
+
+        // The waiting polls are stalled, cancelling them refills the pipeline.
+        if (polls.isEmpty()) {
+            fillPipeline();
+        } else {
+            for (ListenableFuture<String> f : polls) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+    public void close() {
+        super.close();
+        for (ListenableFuture<String> f : polls) {
+            f.cancel(true);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void cancelRequests() {
+        super.cancelRequests();
+        for (ListenableFuture<String> f : polls) {
+            f.cancel(true);
+        }
+    }
+
+    private void firstResponseStarted() {
+        if (pipelinedPolls > 0 && firstResponse.getAndSet(false)) {
+            fillPipeline();
+        }
+    }
+
+    /**
+     * Issue polls until {@link Options#pipelinedPolls()} are waiting on the server.
+     */
+    void fillPipeline() {
+        for (;;) {
+            if (closed.get()) return;
+
+            int waiting = waitingPolls.get();
+            if (waiting >= pipelinedPolls) return;
+            if (!waitingPolls.compareAndSet(waiting, waiting + 1)) continue;
+
+            final PipelinedPoll poll = new PipelinedPoll();
+            try {
+                poll.future = options.runtime().executeRequest(reconnectRequest(), poll);
+                polls.add(poll.future);
+                poll.future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        polls.remove(poll.future);
+                    }
+                }, null);
+            } catch (RuntimeException e) {
+                waitingPolls.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public synchronized State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        heartbeatMonitor.touch();
         handshakeOccurred.set(true);
         if (isBinary) {
             byte[] payload = bodyPart.getBodyPartBytes();
@@ -91,6 +203,8 @@ public class LongPollingTransport extends StreamTransport {
                 if (!Utils.whiteSpace(payload)) {
                     TransportsUtil.invokeFunction(decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver);
                     protocolReceived = true;
+                    // The tracking id has been set
+                    firstResponseStarted();
                 }
                 return AsyncHandler.State.CONTINUE;
             } else {
@@ -105,6 +219,8 @@ public class LongPollingTransport extends StreamTransport {
                 if (m.length() > 0) {
                     TransportsUtil.invokeFunction(decoders, functions, m.getClass(), m, MESSAGE.name(), resolver);
                     protocolReceived = true;
+                    // The tracking id has been set
+                    firstResponseStarted();
                 }
                 return AsyncHandler.State.CONTINUE;
             } else {
@@ -124,5 +240,57 @@ public class LongPollingTransport extends StreamTransport {
         return Request.TRANSPORT.LONG_POLLING;
     }
 
+    /**
+     * The {@link AsyncHandler} of a pipelined poll. All polls are dispatched to the transport, the handler only tracks
+     * whether the poll is still waiting on the server, so a new one is issued once its response starts arriving.
+     */
+    private final class PipelinedPoll implements AsyncHandler<String> {
+
+        private final AtomicBoolean waiting = new AtomicBoolean(true);
+        private volatile ListenableFuture<String> future;
+
+        private void responseStarted() {
+            if (waiting.getAndSet(false)) {
+                waitingPolls.decrementAndGet();
+                fillPipeline();
+            }
+        }
+
+        @Override
+        public State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            responseStarted();
+            return LongPollingTransport.this.onStatusReceived(responseStatus);
+        }
+
+        @Override
+        public State onHeadersReceived(HttpHeaders headers) throws Exception {
+            return LongPollingTransport.this.onHeadersReceived(headers);
+        }
+
+        @Override
+        public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            return LongPollingTransport.this.onBodyPartReceived(bodyPart);
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            if (CancellationException.class.isAssignableFrom(t.getClass())) {
+                // Cancelled by a reconnect or close.
+                responseStarted();
+                return;
+            }
+            if (waiting.getAndSet(false)) {
+                waitingPolls.decrementAndGet();
+            }
+            LongPollingTransport.this.onThrowable(t);
+        }
+
+        @Override
+        public String onCompleted() throws Exception {
+            responseStarted();
+            return LongPollingTransport.this.onCompleted();
+        }
+    }
+
 }
 
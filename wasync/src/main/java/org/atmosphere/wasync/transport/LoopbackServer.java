@@ -0,0 +1,213 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.Request;
+
+/**
+ * An in-JVM stand-in for a server, bound to a uri. A {@link org.atmosphere.wasync.Socket} opened using
+ * {@link Request.TRANSPORT#LOOPBACK} and the same uri connects to it through a {@link LoopbackTransport}, without
+ * any network, so the {@link org.atmosphere.wasync.Socket}, its encoders, decoders and functions can be tested or
+ * benchmarked alone.
+ * <p/>
+ * The messages written by a socket are handed to the {@link Handler}, or captured by its {@link Connection} if the
+ * server has no handler. The messages sent using {@link Connection#send(Object)} are dispatched to the socket.
+ * <blockquote><pre>
+ *     LoopbackServer server = LoopbackServer.bind("loopback://chat");
+ *     Socket socket = client.create().open(client.newRequestBuilder()
+ *          .uri("loopback://chat").transport(Request.TRANSPORT.LOOPBACK).build());
+ *
+ *     server.connections().iterator().next().send("hello");
+ * </pre></blockquote>
+ */
+public class LoopbackServer implements Closeable {
+
+    private final static ConcurrentHashMap<String, LoopbackServer> servers = new ConcurrentHashMap<String, LoopbackServer>();
+
+    private final String uri;
+    private final Handler handler;
+    private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+    /**
+     * Notified, on the socket's thread, of the life cycle and the messages of the {@link Connection}s.
+     */
+    public interface Handler {
+
+        void onOpen(Connection connection);
+
+        /**
+         * A message written by a socket, once encoded.
+         *
+         * @param connection the {@link Connection}
+         * @param message    a String, byte[], {@link java.io.InputStream} or {@link java.io.Reader}
+         */
+        void onMessage(Connection connection, Object message);
+
+        void onClose(Connection connection);
+    }
+
+    private LoopbackServer(String uri, Handler handler) {
+        this.uri = uri;
+        this.handler = handler;
+    }
+
+    /**
+     * Bind a server capturing the messages written.
+     *
+     * @param uri the uri
+     * @return the server
+     * @throws IllegalStateException if a server is already bound to the uri
+     */
+    public static LoopbackServer bind(String uri) {
+        return bind(uri, null);
+    }
+
+    /**
+     * Bind a server.
+     *
+     * @param uri     the uri
+     * @param handler the {@link Handler}, or null to capture the messages written
+     * @return the server
+     * @throws IllegalStateException if a server is already bound to the uri
+     */
+    public static LoopbackServer bind(String uri, Handler handler) {
+        LoopbackServer server = new LoopbackServer(uri, handler);
+        if (servers.putIfAbsent(uri, server) != null) {
+            throw new IllegalStateException("A LoopbackServer is already bound to " + uri);
+        }
+        return server;
+    }
+
+    static LoopbackServer lookup(String uri) {
+        return servers.get(uri);
+    }
+
+    public String uri() {
+        return uri;
+    }
+
+    /**
+     * The connected sockets.
+     *
+     * @return the {@link Connection}s
+     */
+    public Collection<Connection> connections() {
+        return Collections.unmodifiableSet(connections);
+    }
+
+    /**
+     * Send a message to every connected socket.
+     *
+     * @param message the message
+     */
+    public void broadcast(Object message) {
+        for (Connection c : connections) {
+            c.send(message);
+        }
+    }
+
+    /**
+     * Unbind the server and close its connections.
+     */
+    @Override
+    public void close() {
+        servers.remove(uri, this);
+        for (Connection c : new ArrayList<Connection>(connections)) {
+            c.close();
+        }
+    }
+
+    Connection connect(LoopbackTransport transport) {
+        Connection c = new Connection(transport);
+        connections.add(c);
+        return c;
+    }
+
+    void opened(Connection c) {
+        if (handler != null) {
+            handler.onOpen(c);
+        }
+    }
+
+    /**
+     * The server side of a {@link LoopbackTransport}.
+     */
+    public final class Connection {
+
+        private final LoopbackTransport transport;
+        private final BlockingQueue<Object> messages = new LinkedBlockingQueue<Object>();
+
+        private Connection(LoopbackTransport transport) {
+            this.transport = transport;
+        }
+
+        /**
+         * Send a message to the socket. The message is decoded and dispatched on the calling thread.
+         *
+         * @param message the message, usually a String or byte[]
+         */
+        public void send(Object message) {
+            transport.receive(message);
+        }
+
+        /**
+         * Retrieve a message written by the socket, when the server has no {@link Handler}.
+         *
+         * @param timeout the time to wait
+         * @param unit    the unit of the timeout
+         * @return the message, or null if none has been written within the timeout
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return messages.poll(timeout, unit);
+        }
+
+        /**
+         * Close the connection, as if the server closed it.
+         */
+        public void close() {
+            transport.close();
+        }
+
+        public boolean isOpen() {
+            return connections.contains(this);
+        }
+
+        void received(Object message) {
+            if (handler != null) {
+                handler.onMessage(this, message);
+            } else {
+                messages.add(message);
+            }
+        }
+
+        void closed() {
+            if (connections.remove(this) && handler != null) {
+                handler.onClose(this);
+            }
+        }
+    }
+}
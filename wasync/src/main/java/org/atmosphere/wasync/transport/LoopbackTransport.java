@@ -0,0 +1,212 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.atmosphere.wasync.Event.CLOSE;
+import static org.atmosphere.wasync.Event.ERROR;
+import static org.atmosphere.wasync.Event.MESSAGE;
+import static org.atmosphere.wasync.Event.OPEN;
+import static org.atmosphere.wasync.Event.TRANSPORT;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.Transport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-JVM {@link Transport}, connected to the {@link LoopbackServer} bound to the {@link Request#uri()}. Neither
+ * a thread nor a socket is used: the messages written are handed to the server on the writing thread, and the
+ * messages sent by the server are decoded and dispatched on the sending thread.
+ */
+public class LoopbackTransport implements DirectTransport {
+
+    private final static Logger logger = LoggerFactory.getLogger(LoopbackTransport.class);
+
+    private final Request request;
+    private final List<FunctionWrapper> functions;
+    private final List<Decoder<? extends Object, ?>> decoders;
+    private final FunctionResolver resolver;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean errorHandled = new AtomicBoolean();
+    private volatile Socket.STATUS status = Socket.STATUS.INIT;
+    private volatile LoopbackServer.Connection connection;
+    private Future connectOperationFuture;
+
+    public LoopbackTransport(Request request, List<FunctionWrapper> functions) {
+        this.request = request;
+        this.functions = functions;
+        this.decoders = request.decoders();
+        this.resolver = request.functionResolver();
+    }
+
+    /**
+     * Connect to the {@link LoopbackServer} bound to the {@link Request#uri()}.
+     */
+    @Override
+    public void connect() {
+        LoopbackServer server = LoopbackServer.lookup(request.uri());
+        if (server == null) {
+            onThrowable(new ConnectException("No LoopbackServer bound to " + request.uri()));
+            return;
+        }
+
+        connection = server.connect(this);
+        status = Socket.STATUS.OPEN;
+        TransportsUtil.invokeFunction(TRANSPORT, decoders, functions, Request.TRANSPORT.class, name(), TRANSPORT.name(), resolver);
+        TransportsUtil.invokeFunction(OPEN, decoders, functions, String.class, OPEN.name(), OPEN.name(), resolver);
+        server.opened(connection);
+
+        if (connectOperationFuture != null) {
+            try {
+                connectOperationFuture.finishOrThrowException();
+            } catch (IOException e) {
+                logger.warn("", e);
+            }
+        }
+    }
+
+    /**
+     * Hand a message to the server.
+     *
+     * @param message a String, byte[], {@link java.io.InputStream} or {@link java.io.Reader}
+     */
+    @Override
+    public void write(Object message) {
+        LoopbackServer.Connection c = connection;
+        if (c == null || !status.equals(Socket.STATUS.OPEN)) {
+            error(new IOException("Invalid Socket Status " + status.name()));
+            return;
+        }
+        c.received(message);
+    }
+
+    /**
+     * Dispatch a message sent by the server.
+     */
+    void receive(Object message) {
+        if (!status.equals(Socket.STATUS.OPEN)) return;
+        TransportsUtil.invokeFunction(decoders, functions, message.getClass(), message, MESSAGE.name(), resolver);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Request.TRANSPORT name() {
+        return Request.TRANSPORT.LOOPBACK;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transport registerF(FunctionWrapper function) {
+        functions.add(function);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onThrowable(Throwable t) {
+        logger.warn("LoopbackTransport notified with exception {} for request : {}", t, request.uri());
+        status = Socket.STATUS.ERROR;
+        boolean handled = TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver);
+        if (!handled) {
+            connectFutureException(t);
+        }
+        errorHandled.set(handled);
+        if (connectOperationFuture != null) {
+            connectOperationFuture.done();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (closed.getAndSet(true)) return;
+
+        status = Socket.STATUS.CLOSE;
+        TransportsUtil.invokeFunction(CLOSE, decoders, functions, String.class, CLOSE.name(), CLOSE.name(), resolver);
+
+        LoopbackServer.Connection c = connection;
+        if (c != null) {
+            c.closed();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Socket.STATUS status() {
+        return status;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean errorHandled() {
+        return errorHandled.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(Throwable t) {
+        logger.warn("", t);
+        boolean handled = TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver);
+        if (!handled) {
+            connectFutureException(t);
+        }
+    }
+
+    private void connectFutureException(Throwable t) {
+        if (connectOperationFuture == null) return;
+        IOException e = IOException.class.isAssignableFrom(t.getClass()) ? (IOException) t : new IOException(t);
+        connectOperationFuture.ioException(e);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void future(Future f) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connectedFuture(Future f) {
+        this.connectOperationFuture = f;
+    }
+}
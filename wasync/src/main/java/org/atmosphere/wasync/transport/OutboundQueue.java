@@ -0,0 +1,221 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import io.netty.util.ReferenceCountUtil;
+import org.atmosphere.wasync.Options;
+
+/**
+ * The messages written to a WebSocket while its connection isn't writable. They are written, in order, once the
+ * connection is writable again. When the queue is full, the {@link Options.OVERFLOW} policy applies.
+ */
+final class OutboundQueue {
+
+    /**
+     * The connection the messages are written to.
+     */
+    interface Sink {
+
+        /**
+         * @param message a String, byte[] or {@link io.netty.handler.codec.http.websocketx.WebSocketFrame}
+         * @param flush   false to write without flushing
+         */
+        CompletableFuture<Void> write(Object message, boolean flush);
+
+        /**
+         * @return true if the connection's outbound buffer is below its high water mark
+         */
+        boolean isWritable();
+
+        /**
+         * @return true if invoked from the connection's event loop, which must never block
+         */
+        boolean inEventLoop();
+    }
+
+    private final static class Pending {
+        final Object message;
+        final boolean flush;
+        final CompletableFuture<Void> written = new CompletableFuture<Void>();
+
+        Pending(Object message, boolean flush) {
+            this.message = message;
+            this.flush = flush;
+        }
+    }
+
+    private final int size;
+    private final Options.OVERFLOW overflow;
+    private final Sink sink;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<Pending>();
+    private boolean closed;
+
+    OutboundQueue(int size, Options.OVERFLOW overflow, Sink sink) {
+        this.size = size;
+        this.overflow = overflow;
+        this.sink = sink;
+    }
+
+    /**
+     * Write a message, or queue it if the connection isn't writable.
+     *
+     * @param message a String, byte[] or {@link io.netty.handler.codec.http.websocketx.WebSocketFrame}, released
+     *                if not written
+     * @param flush   false to write without flushing
+     * @return a {@link CompletableFuture} completed once the message has been written
+     */
+    CompletableFuture<Void> offer(Object message, boolean flush) {
+        lock.lock();
+        try {
+            for (;;) {
+                if (closed) {
+                    ReferenceCountUtil.release(message);
+                    return failed(new IOException("Closed"));
+                }
+                if (queue.isEmpty() && sink.isWritable()) {
+                    return sink.write(message, flush);
+                }
+                if (queue.size() < size) {
+                    Pending p = new Pending(message, flush);
+                    queue.add(p);
+                    return p.written;
+                }
+
+                if (overflow == Options.OVERFLOW.DROP_OLDEST) {
+                    Pending oldest = queue.poll();
+                    ReferenceCountUtil.release(oldest.message);
+                    oldest.written.completeExceptionally(new OutboundQueueFull(size));
+                } else if (overflow == Options.OVERFLOW.BLOCK && !sink.inEventLoop()) {
+                    try {
+                        drained.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        ReferenceCountUtil.release(message);
+                        return failed(new InterruptedIOException());
+                    }
+                } else {
+                    ReferenceCountUtil.release(message);
+                    return failed(new OutboundQueueFull(size));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the queued messages while the connection is writable.
+     *
+     * @return true if every queued message has been written
+     */
+    boolean drain() {
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && sink.isWritable()) {
+                final Pending p = queue.poll();
+                sink.write(p.message, p.flush).whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(Void v, Throwable t) {
+                        if (t != null) {
+                            p.written.completeExceptionally(t);
+                        } else {
+                            p.written.complete(null);
+                        }
+                    }
+                });
+                drained.signalAll();
+            }
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the queued messages to be written, before writing otherwise. Waiting is skipped when invoked from the
+     * connection's event loop.
+     */
+    void awaitDrained() throws InterruptedIOException {
+        if (sink.inEventLoop()) return;
+
+        lock.lock();
+        try {
+            while (!closed && !queue.isEmpty()) {
+                drained.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accept messages again, once reconnected.
+     */
+    void open() {
+        lock.lock();
+        try {
+            closed = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fail the queued messages, and the messages written until {@link #open()} is invoked.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            Pending p;
+            while ((p = queue.poll()) != null) {
+                ReferenceCountUtil.release(p.message);
+                p.written.completeExceptionally(new IOException("Closed"));
+            }
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static CompletableFuture<Void> failed(Throwable t) {
+        CompletableFuture<Void> f = new CompletableFuture<Void>();
+        f.completeExceptionally(t);
+        return f;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.IOException;
+
+/**
+ * An exception failing a message written to a WebSocket whose outbound queue is full, according to the
+ * {@link org.atmosphere.wasync.Options.OVERFLOW} policy. The message hasn't been sent.
+ */
+public class OutboundQueueFull extends IOException {
+
+    private final int size;
+
+    public OutboundQueueFull(int size) {
+        super("Outbound queue full: " + size + " messages");
+        this.size = size;
+    }
+
+    /**
+     * The size of the queue.
+     *
+     * @return the number of messages queued
+     */
+    public int size() {
+        return size;
+    }
+}
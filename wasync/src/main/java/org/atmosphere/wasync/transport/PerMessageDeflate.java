@@ -0,0 +1,226 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.util.function.Consumer;
+
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.asynchttpclient.netty.channel.ChannelManager;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+
+/**
+ * Configure the RFC 7692 permessage-deflate extension negotiated by the {@link WebSocketTransport}. Compression is
+ * enabled by passing an instance to {@link org.atmosphere.wasync.OptionsBuilder#perMessageDeflate(PerMessageDeflate)}:
+ * <blockquote><pre>
+     Options options = client.newOptionsBuilder()
+             .perMessageDeflate(new PerMessageDeflate().compressionLevel(6).minimumSize(256))
+             .build();
+ * </pre></blockquote>
+ * Frames smaller than {@link #minimumSize()} are sent uncompressed since deflate costs CPU and can make them larger.
+ * If the server doesn't accept the extension, the connection is established without compression.
+ */
+public class PerMessageDeflate {
+
+    private int compressionLevel = 6;
+    private int serverMaxWindowBits = 15;
+    private boolean serverNoContextTakeover = false;
+    private boolean allowClientNoContextTakeover = true;
+    private int minimumSize = 256;
+
+    /**
+     * The deflate compression level, from 0 (no compression) to 9 (best compression). Default is 6.
+     *
+     * @param compressionLevel the compression level
+     * @return this
+     */
+    public PerMessageDeflate compressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * The <tt>server_max_window_bits</tt> requested from the server, from 8 to 15. A smaller window reduces the memory
+     * used by both peers, at the cost of the compression ratio. Default is 15.
+     *
+     * @param serverMaxWindowBits the window size, as a base 2 logarithm
+     * @return this
+     */
+    public PerMessageDeflate serverMaxWindowBits(int serverMaxWindowBits) {
+        if (serverMaxWindowBits < 8 || serverMaxWindowBits > 15) {
+            throw new IllegalArgumentException("serverMaxWindowBits: " + serverMaxWindowBits + " (expected: 8-15)");
+        }
+        this.serverMaxWindowBits = serverMaxWindowBits;
+        return this;
+    }
+
+    /**
+     * Request the server to reset its compression context after every message (<tt>server_no_context_takeover</tt>).
+     * This saves memory on the server but lowers the compression ratio of similar messages. Default is false.
+     *
+     * @param serverNoContextTakeover true to request it
+     * @return this
+     */
+    public PerMessageDeflate serverNoContextTakeover(boolean serverNoContextTakeover) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * Accept a server's request to reset the client compression context after every message
+     * (<tt>client_no_context_takeover</tt>). Default is true.
+     *
+     * @param allowClientNoContextTakeover true to accept it
+     * @return this
+     */
+    public PerMessageDeflate allowClientNoContextTakeover(boolean allowClientNoContextTakeover) {
+        this.allowClientNoContextTakeover = allowClientNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * The size, in bytes, under which a message is sent uncompressed. Default is 256.
+     *
+     * @param minimumSize the size in bytes
+     * @return this
+     */
+    public PerMessageDeflate minimumSize(int minimumSize) {
+        this.minimumSize = minimumSize;
+        return this;
+    }
+
+    /**
+     * The deflate compression level.
+     *
+     * @return the deflate compression level.
+     */
+    public int compressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * The requested <tt>server_max_window_bits</tt>.
+     *
+     * @return the requested <tt>server_max_window_bits</tt>.
+     */
+    public int serverMaxWindowBits() {
+        return serverMaxWindowBits;
+    }
+
+    /**
+     * True if <tt>server_no_context_takeover</tt> is requested.
+     *
+     * @return true if <tt>server_no_context_takeover</tt> is requested.
+     */
+    public boolean serverNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    /**
+     * True if <tt>client_no_context_takeover</tt> is accepted.
+     *
+     * @return true if <tt>client_no_context_takeover</tt> is accepted.
+     */
+    public boolean allowClientNoContextTakeover() {
+        return allowClientNoContextTakeover;
+    }
+
+    /**
+     * The size, in bytes, under which a message is sent uncompressed.
+     *
+     * @return the size, in bytes, under which a message is sent uncompressed.
+     */
+    public int minimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Create the Netty handshaker offering the extension during the WebSocket upgrade.
+     * <p>
+     * A <tt>client_max_window_bits</tt> requested by the server is only accepted if a zlib implementation supporting
+     * custom window sizes (JZlib) is available, as the JDK's deflater always uses 15 bits.
+     *
+     * @return a {@link WebSocketClientExtensionHandshaker}
+     */
+    public WebSocketClientExtensionHandshaker newHandshaker() {
+        return new PerMessageDeflateClientExtensionHandshaker(compressionLevel,
+                ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(),
+                serverMaxWindowBits,
+                allowClientNoContextTakeover,
+                serverNoContextTakeover,
+                new MinimumSizeFilterProvider(minimumSize));
+    }
+
+    /**
+     * Enable the extension on an {@link org.asynchttpclient.AsyncHttpClient} configuration. This is done automatically
+     * when the library creates the {@link org.asynchttpclient.AsyncHttpClient}; invoke this method if you supply your
+     * own using {@link org.atmosphere.wasync.OptionsBuilder#runtime(org.asynchttpclient.AsyncHttpClient)}.
+     *
+     * @param b a {@link DefaultAsyncHttpClientConfig.Builder}
+     * @return the {@link DefaultAsyncHttpClientConfig.Builder}
+     */
+    public DefaultAsyncHttpClientConfig.Builder configure(DefaultAsyncHttpClientConfig.Builder b) {
+        return b.setEnablewebSocketCompression(true).setWsAdditionalChannelInitializer(new Consumer<Channel>() {
+            @Override
+            public void accept(Channel channel) {
+                channel.pipeline().replace(ChannelManager.WS_COMPRESSOR_HANDLER, ChannelManager.WS_COMPRESSOR_HANDLER,
+                        new WebSocketClientExtensionHandler(newHandshaker()));
+            }
+        });
+    }
+
+    /**
+     * Skip the compression of complete text and binary messages smaller than the threshold. Fragments of a message are
+     * never skipped, as all the fragments of a compressed message must be compressed.
+     */
+    private final static class MinimumSizeFilterProvider implements WebSocketExtensionFilterProvider {
+
+        private final WebSocketExtensionFilter encoderFilter;
+
+        private MinimumSizeFilterProvider(final int minimumSize) {
+            this.encoderFilter = new WebSocketExtensionFilter() {
+                @Override
+                public boolean mustSkip(WebSocketFrame frame) {
+                    return (frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame)
+                            && frame.isFinalFragment()
+                            && frame.content().readableBytes() < minimumSize;
+                }
+            };
+        }
+
+        @Override
+        public WebSocketExtensionFilter encoderFilter() {
+            return encoderFilter;
+        }
+
+        @Override
+        public WebSocketExtensionFilter decoderFilter() {
+            return WebSocketExtensionFilter.NEVER_SKIP;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An incremental parser for the <tt>text/event-stream</tt> format, as defined by the Server-Sent Events specification.
+ * Bytes are fed as they are received from the network; the parser keeps its state between invocations, so fields
+ * and events can span any number of chunks. Lines end with CRLF, LF or CR, comment lines starting with ':' are
+ * ignored, multi-line <tt>data:</tt> fields are joined with LF and an event is dispatched on every blank line.
+ */
+public class SSEParser {
+
+    /**
+     * Receive the events parsed by a {@link SSEParser}.
+     */
+    public interface Listener {
+
+        /**
+         * Invoked when an event is dispatched.
+         *
+         * @param event the <tt>event:</tt> field, or <tt>message</tt> if the event has none
+         * @param data  the <tt>data:</tt> fields, joined with LF
+         * @param id    the last event id received, or null
+         */
+        void onEvent(String event, String data, String id);
+
+        /**
+         * Invoked when a valid <tt>retry:</tt> field is received.
+         *
+         * @param reconnectTimeInMilliseconds the reconnection time, in milliseconds
+         */
+        void onRetry(long reconnectTimeInMilliseconds);
+    }
+
+    public final static String DEFAULT_EVENT = "message";
+
+    private final static byte CR = '\r';
+    private final static byte LF = '\n';
+    private final static byte COLON = ':';
+    private final static byte SPACE = ' ';
+    private final static byte[] DATA = {'d', 'a', 't', 'a'};
+    private final static byte[] EVENT = {'e', 'v', 'e', 'n', 't'};
+    private final static byte[] ID = {'i', 'd'};
+    private final static byte[] RETRY = {'r', 'e', 't', 'r', 'y'};
+    private final static byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final Listener listener;
+    private final Charset charset;
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean skipLF;
+    private boolean firstLine = true;
+
+    private final StringBuilder data = new StringBuilder();
+    private boolean hasData;
+    private String event;
+    // The id of the event being parsed, only the last event id once the event is dispatched
+    private String pendingEventId;
+    private volatile String lastEventId;
+
+    public SSEParser(Listener listener, Charset charset) {
+        this.listener = listener;
+        this.charset = charset;
+    }
+
+    /**
+     * Parse a chunk of the stream.
+     *
+     * @param bytes the bytes received
+     */
+    public void parse(byte[] bytes) {
+        parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parse a chunk of the stream.
+     *
+     * @param bytes  the bytes received
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     */
+    public void parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        if (skipLF && i < end) {
+            skipLF = false;
+            // The LF of a CRLF split between two chunks
+            if (bytes[i] == LF) i++;
+        }
+
+        int start = i;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b != CR && b != LF) continue;
+
+            append(bytes, start, i - start);
+            line();
+
+            if (b == CR) {
+                if (i + 1 == end) {
+                    skipLF = true;
+                } else if (bytes[i + 1] == LF) {
+                    i++;
+                }
+            }
+            start = i + 1;
+        }
+        append(bytes, start, end - start);
+    }
+
+    /**
+     * Discard the event being parsed, if any. Must be invoked when the connection is re-established, as an
+     * incomplete event must not be dispatched. The last event id is kept, the id of the incomplete event is
+     * discarded with it.
+     */
+    public void reset() {
+        lineLength = 0;
+        skipLF = false;
+        firstLine = true;
+        data.setLength(0);
+        hasData = false;
+        event = null;
+        pendingEventId = null;
+        if (line.length > 8192) {
+            line = new byte[256];
+        }
+    }
+
+    /**
+     * The id of the last event received.
+     *
+     * @return the id of the last event received, or null
+     */
+    public String lastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Set the id of the last event received, for example when resuming from a previous session.
+     *
+     * @param lastEventId the last event id
+     */
+    public void lastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (length == 0) return;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void line() {
+        int length = lineLength;
+        int offset = 0;
+        lineLength = 0;
+
+        if (firstLine) {
+            firstLine = false;
+            if (startsWith(line, 0, length, BOM)) {
+                offset = BOM.length;
+            }
+        }
+
+        if (offset == length) {
+            dispatch();
+            return;
+        }
+
+        // Comment
+        if (line[offset] == COLON) return;
+
+        int colon = offset;
+        while (colon < length && line[colon] != COLON) {
+            colon++;
+        }
+
+        int valueOffset = colon;
+        if (colon < length) {
+            valueOffset++;
+            if (valueOffset < length && line[valueOffset] == SPACE) {
+                valueOffset++;
+            }
+        }
+
+        field(offset, colon - offset, valueOffset, length - valueOffset);
+    }
+
+    private void field(int nameOffset, int nameLength, int valueOffset, int valueLength) {
+        if (equals(line, nameOffset, nameLength, DATA)) {
+            if (hasData) {
+                data.append('\n');
+            }
+            data.append(new String(line, valueOffset, valueLength, charset));
+            hasData = true;
+        } else if (equals(line, nameOffset, nameLength, EVENT)) {
+            event = new String(line, valueOffset, valueLength, charset);
+        } else if (equals(line, nameOffset, nameLength, ID)) {
+            for (int i = valueOffset; i < valueOffset + valueLength; i++) {
+                if (line[i] == 0) return;
+            }
+            pendingEventId = new String(line, valueOffset, valueLength, charset);
+        } else if (equals(line, nameOffset, nameLength, RETRY)) {
+            if (valueLength == 0 || valueLength > 18) return;
+            long retry = 0;
+            for (int i = valueOffset; i < valueOffset + valueLength; i++) {
+                byte b = line[i];
+                if (b < '0' || b > '9') return;
+                retry = retry * 10 + (b - '0');
+            }
+            listener.onRetry(retry);
+        }
+        // Other fields are ignored
+    }
+
+    private void dispatch() {
+        if (pendingEventId != null) {
+            lastEventId = pendingEventId;
+            pendingEventId = null;
+        }
+        String name = event == null || event.length() == 0 ? DEFAULT_EVENT : event;
+        event = null;
+        if (!hasData) return;
+
+        String d = data.toString();
+        data.setLength(0);
+        hasData = false;
+        listener.onEvent(name, d, lastEventId);
+    }
+
+    private static boolean equals(byte[] bytes, int offset, int length, byte[] name) {
+        return length == name.length && startsWith(bytes, offset, length, name);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
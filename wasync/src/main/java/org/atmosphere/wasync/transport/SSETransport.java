@@ -17,7 +17,15 @@ package org.atmosphere.wasync.transport;
 
 import static org.atmosphere.wasync.Event.MESSAGE;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.RequestBuilder;
@@ -25,6 +33,9 @@ import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.netty.handler.codec.http.HttpHeaders;
 
@@ -35,8 +46,148 @@ import io.netty.handler.codec.http.HttpHeaders;
  */
 public class SSETransport extends StreamTransport {
 
+    public final static String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final static Logger logger = LoggerFactory.getLogger(SSETransport.class);
+    private final static long PERSIST_DELAY_IN_MILLISECONDS = 1000;
+
+    private final SSEParser parser;
+    private volatile long retry = -1;
+    private final File lastEventIdFile;
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private volatile String persistedEventId;
+    private volatile String headerEventId;
+
     public SSETransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
         super(requestBuilder, options, request, functions);
+        // The event stream is always encoded in UTF-8
+        parser = new SSEParser(new SSEParser.Listener() {
+            @Override
+            public void onEvent(String event, String data, String id) {
+                if (lastEventIdFile != null && id != null && !id.equals(persistedEventId)) {
+                    schedulePersist();
+                }
+                String functionName = SSEParser.DEFAULT_EVENT.equals(event) ? MESSAGE.name() : event;
+                TransportsUtil.invokeFunction(decoders, SSETransport.this.functions, String.class, data, functionName, resolver);
+                unlockFuture();
+            }
+
+            @Override
+            public void onRetry(long reconnectTimeInMilliseconds) {
+                retry = reconnectTimeInMilliseconds;
+            }
+        }, StandardCharsets.UTF_8);
+
+        lastEventIdFile = options.lastEventIdFile();
+        if (lastEventIdFile != null) {
+            persistedEventId = readLastEventId(lastEventIdFile);
+            parser.lastEventId(persistedEventId);
+        }
+        headerEventId = parser.lastEventId();
+    }
+
+    /**
+     * The id of the last event received, sent using the <tt>Last-Event-ID</tt> header when reconnecting.
+     *
+     * @return the id of the last event received, or null
+     */
+    public String lastEventId() {
+        return parser.lastEventId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void reconnect() {
+        String id = parser.lastEventId();
+        if (id == null ? headerEventId != null : !id.equals(headerEventId)) {
+            headerEventId = id;
+            reconnectTemplate.invalidate();
+        }
+        super.reconnect();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        super.close();
+        persistLastEventId();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The <tt>Last-Event-ID</tt> header is only set on a copy of the request, the other transports never send it.
+     */
+    @Override
+    public org.asynchttpclient.Request request(RequestBuilder requestBuilder) {
+        RequestBuilder r = new RequestBuilder(requestBuilder.build());
+        String id = headerEventId;
+        if (id != null && id.length() > 0) {
+            r.setHeader(LAST_EVENT_ID, id);
+        } else {
+            // An empty id resets the last event id
+            r.setHeader(LAST_EVENT_ID, Collections.emptyList());
+        }
+        return r.build();
+    }
+
+    private void schedulePersist() {
+        // Coalesce the writes, the file is updated at most once per PERSIST_DELAY_IN_MILLISECONDS
+        if (persistScheduled.getAndSet(true)) return;
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    persistScheduled.set(false);
+                    persistLastEventId();
+                }
+            }, PERSIST_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            persistScheduled.set(false);
+        }
+    }
+
+    private synchronized void persistLastEventId() {
+        String id = parser.lastEventId();
+        if (lastEventIdFile == null || id == null || id.equals(persistedEventId)) return;
+
+        try {
+            writeLastEventId(lastEventIdFile, id);
+            persistedEventId = id;
+        } catch (IOException e) {
+            logger.warn("Unable to persist the last event id in {}", lastEventIdFile, e);
+        }
+    }
+
+    /**
+     * Read the last event id stored in a file.
+     *
+     * @param file the file
+     * @return the last event id, or null if the file doesn't exist or can't be read.
+     */
+    static String readLastEventId(File file) {
+        if (!file.isFile()) return null;
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Unable to read the last event id from {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the last event id to a file, see {@link Utils#writeAtomically(File, byte[])}.
+     *
+     * @param file the file
+     * @param id   the last event id
+     * @throws IOException if the file can't be written
+     */
+    static void writeLastEventId(File file, String id) throws IOException {
+        Utils.writeAtomically(file, id.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -59,6 +210,8 @@ public class SSETransport extends StreamTransport {
             throw new TransportNotSupported(500, "Invalid Content-Type" + ct);
         }
 
+        // A new response, an event left incomplete by the previous one must not be dispatched.
+        parser.reset();
         return super.onHeadersReceived(headers);
     }
 
@@ -67,17 +220,19 @@ public class SSETransport extends StreamTransport {
      */
     @Override
     public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
-    	if(!bodyPart.isLast()) {
-    		String m = new String(bodyPart.getBodyPartBytes(), charSet).trim();
-        	if (m.length() > 0) {
-            	String[] data = m.split("data:");
-            	for (String d : data) {
-                	if (d.length() > 0)
-                    	TransportsUtil.invokeFunction(decoders, functions, d.getClass(), d, MESSAGE.name(), resolver);
-                	unlockFuture();
-            	}
-        	}
-    	}
+        heartbeatMonitor.touch();
+        parser.parse(bodyPart.getBodyPartBytes());
         return State.CONTINUE;
     }
+
+    /**
+     * Return the reconnection time sent by the server using the <tt>retry:</tt> field, or the configured one.
+     *
+     * @return the reconnection time, in milliseconds
+     */
+    @Override
+    protected long reconnectTimeoutInMilliseconds() {
+        long r = retry;
+        return r >= 0 ? r : super.reconnectTimeoutInMilliseconds();
+    }
 }
@@ -19,6 +19,7 @@ import io.netty.handler.codec.http.HttpHeaders;
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.RequestBuilder;
 import org.atmosphere.wasync.Decoder;
 import org.atmosphere.wasync.Event;
@@ -31,6 +32,7 @@ import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Socket.STATUS;
 import org.atmosphere.wasync.Transport;
 import org.atmosphere.wasync.util.FluentStringsMap;
+import org.atmosphere.wasync.util.RequestTemplate;
 import org.atmosphere.wasync.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,9 +44,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.atmosphere.wasync.Event.CLOSE;
 import static org.atmosphere.wasync.Event.ERROR;
@@ -81,6 +85,10 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     protected final boolean protocolEnabled;
     protected final ScheduledExecutorService timer;
     protected boolean protocolReceived = false;
+    protected final HeartbeatMonitor heartbeatMonitor;
+    protected volatile ListenableFuture<String> reconnectFuture;
+    protected final RequestTemplate reconnectTemplate;
+    protected final AtomicReference<Runnable> drained = new AtomicReference<Runnable>();
 
     public StreamTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
         this.decoders = request.decoders();
@@ -98,6 +106,14 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         this.options = options;
         this.requestBuilder = requestBuilder;
         this.request = request;
+        reconnectTemplate = new RequestTemplate() {
+            @Override
+            protected org.asynchttpclient.Request build(Map<String, List<String>> queryString) {
+                FluentStringsMap f = new FluentStringsMap();
+                f.putAll(queryString);
+                return request(StreamTransport.this.requestBuilder.setQueryParams(f));
+            }
+        };
 
         protocolEnabled = request.queryString().get("X-atmo-protocol") != null;
         isBinary = options.binary() ||
@@ -105,6 +121,12 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
                 (request.headers().get("Content-Type") != null && request.headers().get("Content-Type").contains("application/octet-stream"));
 
         timer = Executors.newSingleThreadScheduledExecutor();
+        heartbeatMonitor = new HeartbeatMonitor(timer, new Runnable() {
+            @Override
+            public void run() {
+                onHeartbeatTimeout();
+            }
+        });
     }
 
     /**
@@ -141,6 +163,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
      */
     @Override
     public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        heartbeatMonitor.touch();
         if (isBinary) {
             byte[] payload = bodyPart.getBodyPartBytes();
 
@@ -172,6 +195,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     }
 
     void unlockFuture() {
+        armHeartbeatMonitor();
         // Since the protocol is enabled, handshake occurred, now ready so go asynchronous
         if (connectOperationFuture != null && protocolEnabled) {
             triggerOpen();
@@ -207,6 +231,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
      */
     @Override
     public AsyncHandler.State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        heartbeatMonitor.touch();
         if (connectOperationFuture != null && !protocolEnabled) {
             connectOperationFuture.finishOrThrowException();
         }
@@ -245,7 +270,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     public String onCompleted() throws Exception {
         futureDone();
 
-        if (closed.get()) return "";
+        if (detach() || closed.get()) return "";
 
         if (status == Socket.STATUS.ERROR) {
             return "";
@@ -253,13 +278,14 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
 
         if (options.reconnect()) {
             close(false);
-            if (options.reconnectTimeoutInMilliseconds() > 0) {
+            long reconnectTimeout = reconnectTimeoutInMilliseconds();
+            if (reconnectTimeout > 0) {
                 timer.schedule(new Runnable() {
                     public void run() {
                         status = Socket.STATUS.REOPENED;
                         reconnect();
                     }
-                }, options.reconnectTimeoutInMilliseconds(), TimeUnit.MILLISECONDS);
+                }, reconnectTimeout, TimeUnit.MILLISECONDS);
             } else {
                 status = Socket.STATUS.REOPENED;
                 reconnect();
@@ -270,11 +296,112 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         return "";
     }
 
+    /**
+     * The time to wait before reconnecting once the server closed the connection.
+     *
+     * @return the time to wait, in milliseconds
+     */
+    protected long reconnectTimeoutInMilliseconds() {
+        return options.reconnectTimeoutInMilliseconds();
+    }
+
+    /**
+     * Build the request connecting this transport. The {@link RequestBuilder} may be shared with the other transports
+     * of the {@link org.atmosphere.wasync.Socket} and must not be modified.
+     *
+     * @param requestBuilder the request
+     * @return the request to send
+     */
+    public org.asynchttpclient.Request request(RequestBuilder requestBuilder) {
+        return requestBuilder.build();
+    }
+
     void reconnect() {
-        Map<String, List<String>> c = request.queryString();
-        FluentStringsMap f = new FluentStringsMap();
-        f.putAll(c);
-        options.runtime().executeRequest(requestBuilder.setQueryParams(f).build(), StreamTransport.this);
+        reconnectFuture = options.runtime().executeRequest(reconnectRequest(), StreamTransport.this);
+    }
+
+    /**
+     * The request used to reconnect, with the current query string (which contains the tracking id once the
+     * Atmosphere Protocol handshake occurred). The request is built once and reused until the tracking id changes.
+     *
+     * @return the request used to reconnect
+     */
+    org.asynchttpclient.Request reconnectRequest() {
+        return reconnectTemplate.get(request.queryString(), this);
+    }
+
+    void armHeartbeatMonitor() {
+        if (options.reconnect() && !heartbeatMonitor.isArmed()) {
+            heartbeatMonitor.arm(HeartbeatMonitor.heartbeatInterval(request), options.missedHeartbeatsBeforeReconnect());
+        }
+    }
+
+    /**
+     * Invoked by the {@link HeartbeatMonitor} when neither a message nor a heartbeat has been received within the
+     * configured number of heartbeat intervals. The stalled request is cancelled and a new one is issued.
+     */
+    protected void onHeartbeatTimeout() {
+        if (detach() || closed.get() || !(status.equals(Socket.STATUS.OPEN) || status.equals(Socket.STATUS.REOPENED))) return;
+
+        logger.info("No message or heartbeat received from {}, reconnecting", request.uri());
+        java.util.concurrent.Future<?> stalled = reconnectFuture != null ? reconnectFuture : underlyingFuture;
+        if (stalled != null) stalled.cancel(true);
+
+        close(false);
+        status = Socket.STATUS.REOPENED;
+        reconnect();
+    }
+
+    /**
+     * Stop using this transport once the response in progress completed, or at the latest once the timeout elapsed,
+     * without reconnecting nor dispatching {@link Event#CLOSE}: the {@link Socket} moved to another transport.
+     *
+     * @param timeout   the time, in milliseconds, given to the response in progress to complete
+     * @param onDrained invoked once this transport is no longer used
+     * @return false if this transport is closed
+     */
+    public boolean drain(long timeout, Runnable onDrained) {
+        if (closed.get() || !drained.compareAndSet(null, onDrained)) return false;
+
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    detach();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+            drained.set(null);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Detach this transport if it is drained.
+     *
+     * @return true if detached
+     */
+    boolean detach() {
+        Runnable onDrained = drained.getAndSet(null);
+        if (onDrained == null) return false;
+
+        logger.debug("{} drained for {}", name(), request.uri());
+        closed.set(true);
+        heartbeatMonitor.disarm();
+        timer.shutdown();
+        cancelRequests();
+        onDrained.run();
+        return true;
+    }
+
+    /**
+     * Cancel the requests in progress.
+     */
+    void cancelRequests() {
+        if (underlyingFuture != null) underlyingFuture.cancel(false);
+        if (reconnectFuture != null) reconnectFuture.cancel(true);
     }
 
     /**
@@ -300,6 +427,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         status = Socket.STATUS.CLOSE;
 
         if (force) {
+            heartbeatMonitor.disarm();
             timer.shutdown();
         }
 
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remember, per origin, which {@link Request.TRANSPORT} connected and which failed, for a TTL. A
+ * {@link org.atmosphere.wasync.Socket} using the cache skips the preferred transports known to fail and starts with
+ * the next one. The transports skipped are re-probed in the background once their failure is older than half the
+ * TTL, so a transport working again is used by the next sockets. The cache can be shared by every socket of a
+ * {@link org.atmosphere.wasync.Client} using {@link org.atmosphere.wasync.OptionsBuilder#transportCache(TransportCache)},
+ * and persisted in a file so a restarted process doesn't repeat the failures either. The file is only written when a
+ * result changes: a restarted process sees when each result was first stored, and may probe a transport sooner.
+ */
+public class TransportCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(TransportCache.class);
+
+    private final long ttl;
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final Set<String> probes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final static class Entry {
+        final boolean supported;
+        final long time;
+
+        Entry(boolean supported, long time) {
+            this.supported = supported;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Create a cache kept in memory.
+     *
+     * @param ttl  how long a result is remembered
+     * @param unit the unit of the ttl
+     */
+    public TransportCache(long ttl, TimeUnit unit) {
+        this(ttl, unit, null);
+    }
+
+    /**
+     * Create a cache persisted in a file. The results stored in the file are loaded first.
+     *
+     * @param ttl  how long a result is remembered
+     * @param unit the unit of the ttl
+     * @param file the file, or null
+     */
+    public TransportCache(long ttl, TimeUnit unit, File file) {
+        this.ttl = unit.toMillis(ttl);
+        this.file = file;
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * The origin of a uri: its scheme, host and port. WebSocket and HTTP uris share the same origin.
+     *
+     * @param uri the uri
+     * @return the origin
+     */
+    public static String origin(String uri) {
+        URI u = URI.create(uri);
+        String scheme = u.getScheme() == null ? "http" : u.getScheme().toLowerCase();
+        boolean secured = scheme.equals("https") || scheme.equals("wss");
+        int port = u.getPort() == -1 ? (secured ? 443 : 80) : u.getPort();
+        return (secured ? "https://" : "http://") + u.getHost() + ":" + port;
+    }
+
+    /**
+     * Remember a transport connected.
+     *
+     * @param uri       the uri
+     * @param transport the transport
+     */
+    public void succeeded(String uri, Request.TRANSPORT transport) {
+        put(uri, transport, true);
+    }
+
+    /**
+     * Remember a transport failed.
+     *
+     * @param uri       the uri
+     * @param transport the transport
+     */
+    public void failed(String uri, Request.TRANSPORT transport) {
+        put(uri, transport, false);
+    }
+
+    /**
+     * Is a transport known to connect.
+     *
+     * @param uri       the uri
+     * @param transport the transport
+     * @return true or false, or null if unknown or expired
+     */
+    public Boolean supported(String uri, Request.TRANSPORT transport) {
+        Entry e = entry(key(uri, transport));
+        return e == null ? null : e.supported;
+    }
+
+    /**
+     * The transports to use, without the preferred ones known to fail. The last transport is always kept.
+     *
+     * @param uri        the uri
+     * @param transports the transports, by order of preference
+     * @return the transports to try
+     */
+    public List<Request.TRANSPORT> transports(String uri, List<Request.TRANSPORT> transports) {
+        int skip = 0;
+        while (skip < transports.size() - 1 && Boolean.FALSE.equals(supported(uri, transports.get(skip)))) {
+            skip++;
+        }
+        return new ArrayList<Request.TRANSPORT>(transports.subList(skip, transports.size()));
+    }
+
+    /**
+     * Should a transport known to fail be probed again. Once true is returned, no other probe starts until the
+     * result of this one is stored using {@link #succeeded(String, Request.TRANSPORT)} or
+     * {@link #failed(String, Request.TRANSPORT)}.
+     *
+     * @param uri       the uri
+     * @param transport the transport
+     * @return true if the transport must be probed
+     */
+    public boolean probe(String uri, Request.TRANSPORT transport) {
+        String key = key(uri, transport);
+        Entry e = entry(key);
+        if (e == null || e.supported || System.currentTimeMillis() - e.time < ttl / 2) {
+            return false;
+        }
+        return probes.add(key);
+    }
+
+    /**
+     * Forget every result.
+     */
+    public void clear() {
+        entries.clear();
+        persist();
+    }
+
+    private void put(String uri, Request.TRANSPORT transport, boolean supported) {
+        String key = key(uri, transport);
+        probes.remove(key);
+        Entry previous = entries.put(key, new Entry(supported, System.currentTimeMillis()));
+        if (previous == null || previous.supported != supported) {
+            logger.debug("Transport {} {} by {}", transport, supported ? "supported" : "not supported", origin(uri));
+            persist();
+        }
+    }
+
+    private Entry entry(String key) {
+        Entry e = entries.get(key);
+        if (e != null && System.currentTimeMillis() - e.time >= ttl) {
+            entries.remove(key, e);
+            return null;
+        }
+        return e;
+    }
+
+    private static String key(String uri, Request.TRANSPORT transport) {
+        return origin(uri) + " " + transport.name();
+    }
+
+    private void load() {
+        if (!file.isFile()) return;
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                String[] s = line.split(" ");
+                if (s.length != 4) continue;
+                try {
+                    Request.TRANSPORT.valueOf(s[1]);
+                    entries.put(s[0] + " " + s[1], new Entry(Boolean.parseBoolean(s[2]), Long.parseLong(s[3])));
+                } catch (IllegalArgumentException e) {
+                    logger.trace("Ignoring {}", line, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read the transports from {}", file, e);
+        }
+    }
+
+    private synchronized void persist() {
+        if (file == null) return;
+
+        StringBuilder b = new StringBuilder();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            b.append(e.getKey()).append(' ').append(e.getValue().supported).append(' ').append(e.getValue().time).append('\n');
+        }
+        try {
+            Utils.writeAtomically(file, b.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Unable to persist the transports in {}", file, e);
+        }
+    }
+}
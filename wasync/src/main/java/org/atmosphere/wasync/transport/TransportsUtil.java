@@ -42,13 +42,32 @@ public class TransportsUtil {
         return invokeFunction(Event.MESSAGE, decoders, functions, implementedType, instanceType, functionName, resolver);
     }
 
-    public static boolean invokeFunction(Event e,
-                                         List<Decoder<? extends Object, ?>> decoders,
-                                         List<FunctionWrapper> functions,
-                                         Class<?> implementedType,
-                                         Object instanceType,
-                                         String functionName,
-                                         FunctionResolver resolver) {
+    public static boolean invokeFunction(final Event e,
+                                         final List<Decoder<? extends Object, ?>> decoders,
+                                         final List<FunctionWrapper> functions,
+                                         final Class<?> implementedType,
+                                         final Object instanceType,
+                                         final String functionName,
+                                         final FunctionResolver resolver) {
+        if (functions instanceof DeferredFunctions
+                && ((DeferredFunctions) functions).defer(e, instanceType, new Runnable() {
+            @Override
+            public void run() {
+                invokeFunction(e, decoders, functions, implementedType, instanceType, functionName, resolver);
+            }
+        })) {
+            return true;
+        }
+        return dispatch(e, decoders, functions, implementedType, instanceType, functionName, resolver);
+    }
+
+    private static boolean dispatch(Event e,
+                                    List<Decoder<? extends Object, ?>> decoders,
+                                    List<FunctionWrapper> functions,
+                                    Class<?> implementedType,
+                                    Object instanceType,
+                                    String functionName,
+                                    FunctionResolver resolver) {
         boolean hasMatch = false;
         String originalMessage = instanceType == null ? "" : instanceType.toString();
 
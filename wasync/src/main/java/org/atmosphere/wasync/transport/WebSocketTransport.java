@@ -15,11 +15,25 @@
  */
 package org.atmosphere.wasync.transport;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GenericFutureListener;
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseStatus;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.netty.channel.ChannelManager;
 import org.asynchttpclient.netty.ws.NettyWebSocket;
 import org.asynchttpclient.ws.WebSocket;
 import org.asynchttpclient.ws.WebSocketListener;
@@ -34,18 +48,32 @@ import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Socket.STATUS;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.impl.AtmosphereRequest;
+import org.atmosphere.wasync.util.NettyResources;
 import org.atmosphere.wasync.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -58,6 +86,7 @@ import static org.atmosphere.wasync.Event.OPEN;
 import static org.atmosphere.wasync.Event.REOPENED;
 import static org.atmosphere.wasync.Event.STATUS;
 import static org.atmosphere.wasync.Event.TRANSPORT;
+import static org.atmosphere.wasync.Event.WRITABLE;
 
 /**
  * WebSocket {@link org.atmosphere.wasync.Transport} implementation
@@ -66,6 +95,14 @@ import static org.atmosphere.wasync.Event.TRANSPORT;
  */
 public class WebSocketTransport extends WebSocketUpgradeHandler implements Transport {
 
+	/**
+	 * The maximum size of the fragments used to stream {@link InputStream} and {@link Reader} messages.
+	 */
+	public final static int FRAGMENT_SIZE = 8192;
+
+	private final static String WRITABILITY_HANDLER = "wasync-writability";
+	private final static String FRAGMENTS_HANDLER = "wasync-fragments";
+
 	private final Logger logger = LoggerFactory.getLogger(WebSocketTransport.class);
 	private NettyWebSocket webSocket;
 
@@ -87,6 +124,15 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 	protected boolean supportBinary = false;
 	protected final ScheduledExecutorService timer;
 	protected boolean protocolReceived = false;
+	protected final Request request;
+	protected final HeartbeatMonitor heartbeatMonitor;
+	private final Object writeLock = new Object();
+	private final CoalescingWriter coalescer;
+	private volatile Channel channel;
+	private final OutboundQueue outbound;
+	// Streams the messages sent by streamMessageAsync, one after the other. Its thread stops once idle.
+	private final ExecutorService streamer = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("wasync-stream", true));
 
 	public WebSocketTransport(RequestBuilder requestBuilder, Options options, Request request,
 			List<FunctionWrapper> functions) {
@@ -105,6 +151,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 		this.resolver = request.functionResolver();
 		this.options = options;
 		this.requestBuilder = requestBuilder;
+		this.request = request;
 		this.supportBinary = options.binary() ||
 		// Backward compatibility.
 				(request.headers().get("Content-Type") != null
@@ -112,7 +159,34 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 						: false);
 
 		protocolEnabled = request.queryString().get("X-atmo-protocol") != null;
+		coalescer = options.writeLinger() < 0 ? null
+				: new CoalescingWriter(options.writeLinger(), options.writeBatchSize(), batchDelimiter(options, request));
+		outbound = options.outboundQueueSize() <= 0 ? null
+				: new OutboundQueue(options.outboundQueueSize(), options.outboundQueueOverflow(), new OutboundQueue.Sink() {
+					@Override
+					public CompletableFuture<Void> write(Object message, boolean flush) {
+						return WebSocketTransport.this.write(message, flush);
+					}
+
+					@Override
+					public boolean isWritable() {
+						Channel c = channel;
+						return c != null && c.isWritable();
+					}
+
+					@Override
+					public boolean inEventLoop() {
+						Channel c = channel;
+						return c != null && c.eventLoop().inEventLoop();
+					}
+				});
 		timer = Executors.newSingleThreadScheduledExecutor();
+		heartbeatMonitor = new HeartbeatMonitor(timer, new Runnable() {
+			@Override
+			public void run() {
+				onHeartbeatTimeout();
+			}
+		});
 	}
 
 	/**
@@ -135,13 +209,19 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 			return;
 
 		if (options.reconnectTimeoutInMilliseconds() <= 0 && !options.reconnect()) {
+			heartbeatMonitor.disarm();
 			timer.shutdown();
 		}
 
 		TransportsUtil.invokeFunction(CLOSE, decoders, functions, String.class, CLOSE.name(), CLOSE.name(), resolver);
 
-		if (webSocket != null && webSocket.isOpen())
+		if (outbound != null) {
+			outbound.close();
+		}
+		if (webSocket != null && webSocket.isOpen()) {
+			flushCoalesced();
 			webSocket.sendCloseFrame();
+		}
 
 		futureDone();
 	}
@@ -260,6 +340,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 	@Override
 	protected void onOpen0() {
 		logger.trace("onOpen {}", webSocket);
+		heartbeatMonitor.touch();
 
 		if (connectOperationFuture != null && !protocolEnabled) {
 			unlockFuture();
@@ -270,9 +351,35 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 			l = new BinaryListener(l);
 		}
 		webSocket.addWebSocketListener(l);
+		watchWritability();
 		l.onOpen(webSocket);
 	}
 
+	private void watchWritability() {
+		Channel c = channel;
+		if (c == null || c.pipeline().get(WRITABILITY_HANDLER) != null) return;
+
+		c.pipeline().addLast(WRITABILITY_HANDLER, new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+				super.channelWritabilityChanged(ctx);
+				onWritabilityChanged(ctx.channel());
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+		this.channel = connection;
+		if (connection.pipeline().get(ChannelManager.AHC_WS_HANDLER) != null
+				&& connection.pipeline().get(FRAGMENTS_HANDLER) == null) {
+			connection.pipeline().addBefore(ChannelManager.AHC_WS_HANDLER, FRAGMENTS_HANDLER, new FragmentAggregator());
+		}
+	}
+
 	@Override
 	protected void setWebSocket0(NettyWebSocket webSocket) {
 		this.webSocket = webSocket;
@@ -300,41 +407,75 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 	}
 
 	void reconnect() {
-		try {
-			reconnecting.set(true);
-			ok.set(false);
-
-			status = Socket.STATUS.REOPENED;
-
-			ListenableFuture<NettyWebSocket> webSocketListenableFuture = options.runtime()
-					.executeRequest(requestBuilder.build(), WebSocketTransport.this);
-
-			logger.info("try reconnect : attempt [{}/{}]", reconnectAttempt.get(), options.reconnectAttempts());
-
-			webSocketListenableFuture.get();
+		reconnecting.set(true);
+		ok.set(false);
+
+		status = Socket.STATUS.REOPENED;
+
+		final ListenableFuture<NettyWebSocket> webSocketListenableFuture = options.runtime()
+				.executeRequest(requestBuilder.build(), WebSocketTransport.this);
+
+		logger.info("try reconnect : attempt [{}/{}]", reconnectAttempt.get(), options.reconnectAttempts());
+
+		// Don't wait for the connection: reconnect is invoked by the event loop, which the connection needs.
+		webSocketListenableFuture.addListener(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					webSocketListenableFuture.get();
+
+					logger.info("reconnect successful ! in attempt [{}/{}]", reconnectAttempt.get(),
+							options.reconnectAttempts());
+
+					TransportsUtil.invokeFunction(REOPENED, decoders, functions, String.class, REOPENED.name(),
+							REOPENED.name(), resolver);
+
+					closed.set(false);
+					reconnectAttempt.set(0);
+					reconnecting.set(false);
+				} catch (InterruptedException e) {
+					reconnecting.set(false);
+					logger.error("", e);
+				} catch (ExecutionException e) {
+
+					if (reconnectAttempt.get() < options.reconnectAttempts()) {
+						tryReconnect();
+					} else {
+						reconnecting.set(false);
+						reconnectAttempt.set(0);
+						onFailure(e.getCause() != null ? e.getCause() : e);
+					}
+				}
+			}
+		}, null);
+	}
 
-			logger.info("reconnect successful ! in attempt [{}/{}]", reconnectAttempt.get(),
-					options.reconnectAttempts());
+	void armHeartbeatMonitor() {
+		if (options.reconnect() && !heartbeatMonitor.isArmed()) {
+			heartbeatMonitor.arm(HeartbeatMonitor.heartbeatInterval(request), options.missedHeartbeatsBeforeReconnect());
+		}
+	}
 
-			TransportsUtil.invokeFunction(REOPENED, decoders, functions, String.class, REOPENED.name(), REOPENED.name(),
-					resolver);
+	/**
+	 * Invoked by the {@link HeartbeatMonitor} when neither a message nor a heartbeat has been received within the
+	 * configured number of heartbeat intervals. The stalled connection is dropped and a new one is opened.
+	 */
+	protected void onHeartbeatTimeout() {
+		if (closed.get() || reconnecting.get() || !status.equals(Socket.STATUS.OPEN))
+			return;
 
-			closed.set(false);
-			reconnectAttempt.set(0);
-			reconnecting.set(false);
-		} catch (InterruptedException e) {
-			reconnecting.set(false);
-			logger.error("", e);
-		} catch (ExecutionException e) {
-
-			if (reconnectAttempt.get() < options.reconnectAttempts()) {
-				tryReconnect();
-			} else {
-				reconnecting.set(false);
-				reconnectAttempt.set(0);
-				onFailure(e.getCause() != null ? e.getCause() : e);
+		logger.info("No message or heartbeat received from {}, reconnecting", webSocket);
+		NettyWebSocket stalled = webSocket;
+		// The close handshake can't complete over a stalled connection, so don't wait for it.
+		webSocket = null;
+		close();
+		if (stalled != null) {
+			io.netty.util.concurrent.Future<Void> f = stalled.sendCloseFrame(1001, "Heartbeat timeout");
+			if (f instanceof ChannelFuture) {
+				((ChannelFuture) f).channel().close();
 			}
 		}
+		tryReconnect();
 	}
 
 	public boolean touchSuccess() {
@@ -378,23 +519,593 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 	}
 
 	public WebSocketTransport sendMessage(String message) {
-		if (webSocket != null && !status.equals(Socket.STATUS.ERROR) && !status.equals(Socket.STATUS.CLOSE)) {
-			webSocket.sendTextFrame(message);
-		}
+		sendMessageAsync(message);
 		return this;
 	}
 
 	public WebSocketTransport sendMessage(byte[] message) {
-		if (webSocket != null && !status.equals(Socket.STATUS.ERROR) && !status.equals(Socket.STATUS.CLOSE)) {
-			webSocket.sendBinaryFrame(message);
+		sendMessageAsync(message);
+		return this;
+	}
+
+	/**
+	 * Send a text message.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> sendMessageAsync(String message) {
+		return send(message, true);
+	}
+
+	/**
+	 * Send a binary message.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> sendMessageAsync(byte[] message) {
+		return send(message, true);
+	}
+
+	/**
+	 * Send the remaining content of a {@link ByteBuffer} as a binary message, without copying it. A message bigger than
+	 * {@link #FRAGMENT_SIZE} is sent as {@link #FRAGMENT_SIZE} bytes fragments. The position of the buffer doesn't
+	 * change.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the message has been flushed
+	 */
+	public CompletableFuture<Void> sendMessageAsync(ByteBuffer message) {
+		if (message.remaining() <= FRAGMENT_SIZE) {
+			return send(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(message)), true);
+		}
+
+		synchronized (writeLock) {
+			NettyWebSocket ws = webSocket;
+			if (ws == null || status.equals(Socket.STATUS.ERROR) || status.equals(Socket.STATUS.CLOSE)) {
+				return invalidStatus();
+			}
+
+			try {
+				awaitDrained();
+			} catch (InterruptedIOException e) {
+				CompletableFuture<Void> written = new CompletableFuture<Void>();
+				written.completeExceptionally(e);
+				return written;
+			}
+			flushCoalesced();
+			ByteBuffer remaining = message.slice();
+			io.netty.util.concurrent.Future<Void> written;
+			boolean first = true;
+			boolean last;
+			do {
+				ByteBuffer fragment = remaining.duplicate();
+				fragment.limit(fragment.position() + Math.min(FRAGMENT_SIZE, remaining.remaining()));
+				remaining.position(remaining.position() + fragment.remaining());
+				last = !remaining.hasRemaining();
+
+				ByteBuf b = Unpooled.wrappedBuffer(fragment);
+				written = first ? ws.sendBinaryFrame(b, last, 0) : ws.sendContinuationFrame(b, last, 0);
+				first = false;
+			} while (!last);
+			return completion(written);
+		}
+	}
+
+	/**
+	 * Send a frame, which content is released once written. Sending the retained duplicates of a buffer to many
+	 * WebSockets doesn't copy it.
+	 *
+	 * @param frame a {@link TextWebSocketFrame} or a {@link BinaryWebSocketFrame}
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> sendMessageAsync(WebSocketFrame frame) {
+		return send(frame, true);
+	}
+
+	/**
+	 * Write a text message without flushing it. It is sent by the next {@link #flush()}, or the next message sent.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> writeMessageAsync(String message) {
+		return send(message, false);
+	}
+
+	/**
+	 * Write a binary message without flushing it. It is sent by the next {@link #flush()}, or the next message sent.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> writeMessageAsync(byte[] message) {
+		return send(message, false);
+	}
+
+	/**
+	 * Write a frame without flushing it, see {@link #sendMessageAsync(WebSocketFrame)}.
+	 *
+	 * @param frame a {@link TextWebSocketFrame} or a {@link BinaryWebSocketFrame}
+	 * @return a {@link CompletableFuture} completed once the frame has been flushed
+	 */
+	public CompletableFuture<Void> writeMessageAsync(WebSocketFrame frame) {
+		return send(frame, false);
+	}
+
+	/**
+	 * Flush the messages written using {@link #writeMessageAsync(String)} or {@link #writeMessageAsync(byte[])}.
+	 */
+	public void flush() {
+		flushCoalesced();
+		Channel c = channel;
+		if (c != null) {
+			c.flush();
+		}
+	}
+
+	/**
+	 * Return true if the connection's outbound buffer is below its high water mark, and no message is queued.
+	 *
+	 * @return true if writable
+	 */
+	public boolean isWritable() {
+		Channel c = channel;
+		return !status.equals(Socket.STATUS.ERROR) && !status.equals(Socket.STATUS.CLOSE) && c != null
+				&& c.isWritable() && (outbound == null || outbound.isEmpty());
+	}
+
+	private CompletableFuture<Void> send(Object message, boolean flush) {
+		synchronized (writeLock) {
+			if (webSocket == null || status.equals(Socket.STATUS.ERROR) || status.equals(Socket.STATUS.CLOSE)) {
+				ReferenceCountUtil.release(message);
+				return invalidStatus();
+			}
+			if (outbound == null) {
+				return write(message, flush);
+			}
+			// Blocks with Options.OVERFLOW.BLOCK. Under the lock, so a message is never written between the
+			// fragments of another one
+			return outbound.offer(message, flush);
+		}
+	}
+
+	private CompletableFuture<Void> write(Object message, boolean flush) {
+		NettyWebSocket ws = webSocket;
+		Channel c = channel;
+		if (ws == null || (c == null && message instanceof WebSocketFrame)) {
+			ReferenceCountUtil.release(message);
+			return invalidStatus();
+		}
+
+		if (c != null && coalescer != null) {
+			// Flushed once the linger time has elapsed, at the latest
+			if (message instanceof WebSocketFrame) {
+				return coalescer.write(c, (WebSocketFrame) message);
+			}
+			return message instanceof String ? coalescer.write(c, (String) message)
+					: coalescer.write(c, (byte[]) message);
+		} else if (message instanceof WebSocketFrame) {
+			return completion(flush ? c.writeAndFlush(message) : c.write(message));
+		} else if (c != null && !flush) {
+			return completion(c.write(message instanceof String ? new TextWebSocketFrame((String) message)
+					: new BinaryWebSocketFrame(Unpooled.wrappedBuffer((byte[]) message))));
+		}
+		return message instanceof String ? completion(ws.sendTextFrame((String) message))
+				: completion(ws.sendBinaryFrame((byte[]) message));
+	}
+
+	/**
+	 * Invoked by the connection's event loop when its writability changed. The queued messages are written, and
+	 * {@link Event#WRITABLE} is fired once they all have been.
+	 */
+	protected void onWritabilityChanged(Channel c) {
+		if (!c.isWritable() || c != channel) return;
+
+		if (outbound == null || outbound.drain()) {
+			TransportsUtil.invokeFunction(WRITABLE, decoders, functions, String.class, WRITABLE.name(), WRITABLE.name(),
+					resolver);
+		}
+	}
+
+	private void awaitDrained() throws InterruptedIOException {
+		if (outbound != null) {
+			outbound.awaitDrained();
+		}
+	}
+
+	/**
+	 * Flush the messages coalesced, if {@link Options#writeLinger()} is enabled, before writing otherwise.
+	 */
+	private void flushCoalesced() {
+		if (coalescer != null) {
+			coalescer.flush();
+		}
+	}
+
+	private static String batchDelimiter(Options options, Request request) {
+		if (options.writeBatchFrame() && request instanceof AtmosphereRequest
+				&& ((AtmosphereRequest) request).isTrackMessageLength()) {
+			String delimiter = ((AtmosphereRequest) request).getTrackMessageLengthDelimiter();
+			// Without a delimiter, the messages can't be split
+			return delimiter.length() > 0 ? delimiter : null;
+		}
+		return null;
+	}
+
+	private CompletableFuture<Void> invalidStatus() {
+		CompletableFuture<Void> written = new CompletableFuture<Void>();
+		written.completeExceptionally(invalidStatusException());
+		return written;
+	}
+
+	private IOException invalidStatusException() {
+		return new IOException("Invalid Socket Status " + status.name());
+	}
+
+	private static CompletableFuture<Void> completion(io.netty.util.concurrent.Future<Void> f) {
+		final CompletableFuture<Void> written = new CompletableFuture<Void>();
+		f.addListener(new GenericFutureListener<io.netty.util.concurrent.Future<Void>>() {
+			@Override
+			public void operationComplete(io.netty.util.concurrent.Future<Void> f) {
+				if (f.isSuccess()) {
+					written.complete(null);
+				} else {
+					written.completeExceptionally(f.cause());
+				}
+			}
+		});
+		return written;
+	}
+
+	/**
+	 * Stream the content of an {@link InputStream} as a binary message made of {@link #FRAGMENT_SIZE} bytes fragments.
+	 * A fragment is only read once the previous one has been written, so the memory used doesn't depend on the size
+	 * of the message.
+	 *
+	 * @param message an {@link InputStream}
+	 * @return this
+	 * @throws IOException if the stream can't be read, a fragment can't be written, or the WebSocket isn't open
+	 */
+	public WebSocketTransport sendMessage(InputStream message) throws IOException {
+		synchronized (writeLock) {
+			NettyWebSocket ws = webSocket;
+			if (ws == null || status.equals(Socket.STATUS.ERROR) || status.equals(Socket.STATUS.CLOSE)) {
+				throw invalidStatusException();
+			}
+
+			awaitDrained();
+			flushCoalesced();
+			byte[] current = new byte[FRAGMENT_SIZE];
+			byte[] next = new byte[FRAGMENT_SIZE];
+			int length = fill(message, current);
+			boolean first = true;
+			boolean last;
+			do {
+				int nextLength = length < current.length ? 0 : fill(message, next);
+				last = nextLength == 0;
+
+				ByteBuf fragment = Unpooled.wrappedBuffer(current, 0, length);
+				boolean written = awaitWrite(first ? ws.sendBinaryFrame(fragment, last, 0)
+						: ws.sendContinuationFrame(fragment, last, 0));
+
+				// The fragment wraps the array, which can't be recycled until it has been written.
+				byte[] tmp = current;
+				current = next;
+				next = written ? tmp : new byte[FRAGMENT_SIZE];
+				length = nextLength;
+				first = false;
+			} while (!last);
 		}
 		return this;
 	}
 
+	/**
+	 * Send the content of a file as a binary message made of {@link #FRAGMENT_SIZE} bytes fragments, see
+	 * {@link #sendMessage(FileChannel)}.
+	 *
+	 * @param message the file's {@link Path}
+	 * @return this
+	 * @throws IOException if the file can't be read or a fragment can't be written
+	 */
+	public WebSocketTransport sendMessage(Path message) throws IOException {
+		FileChannel channel = FileChannel.open(message, StandardOpenOption.READ);
+		try {
+			return sendMessage(channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Send the content of a {@link FileChannel}, from its position to its end, as a binary message made of
+	 * {@link #FRAGMENT_SIZE} bytes fragments. Each fragment is read straight into a pooled buffer, once the previous
+	 * one has been written. The position of the channel doesn't change, and the channel isn't closed.
+	 *
+	 * @param message a {@link FileChannel}
+	 * @return this
+	 * @throws IOException if the channel can't be read, a fragment can't be written, or the WebSocket isn't open
+	 */
+	public WebSocketTransport sendMessage(FileChannel message) throws IOException {
+		synchronized (writeLock) {
+			NettyWebSocket ws = webSocket;
+			if (ws == null || status.equals(Socket.STATUS.ERROR) || status.equals(Socket.STATUS.CLOSE)) {
+				throw invalidStatusException();
+			}
+
+			awaitDrained();
+			flushCoalesced();
+			long position = message.position();
+			long end = message.size();
+			boolean first = true;
+			boolean last;
+			do {
+				int length = (int) Math.min(FRAGMENT_SIZE, end - position);
+				ByteBuf fragment = NettyResources.allocator().directBuffer(length);
+				int read = 0;
+				try {
+					int n;
+					while (read < length && (n = fragment.writeBytes(message, position + read, length - read)) > 0) {
+						read += n;
+					}
+				} catch (IOException e) {
+					fragment.release();
+					throw e;
+				}
+				position += read;
+				// The file may have been truncated meanwhile
+				last = position >= end || read < length;
+
+				awaitWrite(first ? ws.sendBinaryFrame(fragment, last, 0) : ws.sendContinuationFrame(fragment, last, 0));
+				first = false;
+			} while (!last);
+		}
+		return this;
+	}
+
+	/**
+	 * Stream the content of a {@link Reader} as a text message made of {@link #FRAGMENT_SIZE} characters fragments.
+	 * A fragment is only read once the previous one has been written, so the memory used doesn't depend on the size
+	 * of the message.
+	 *
+	 * @param message a {@link Reader}
+	 * @return this
+	 * @throws IOException if the reader can't be read, a fragment can't be written, or the WebSocket isn't open
+	 */
+	public WebSocketTransport sendMessage(Reader message) throws IOException {
+		synchronized (writeLock) {
+			NettyWebSocket ws = webSocket;
+			if (ws == null || status.equals(Socket.STATUS.ERROR) || status.equals(Socket.STATUS.CLOSE)) {
+				throw invalidStatusException();
+			}
+
+			awaitDrained();
+			flushCoalesced();
+			char[] current = new char[FRAGMENT_SIZE];
+			char[] next = new char[FRAGMENT_SIZE];
+			int filled = fill(message, current, 0);
+			boolean first = true;
+			boolean last;
+			do {
+				int length = filled;
+				int carry = 0;
+				boolean eof = filled < current.length;
+				// Never split a surrogate pair between two fragments, each one is encoded separately.
+				if (!eof && Character.isHighSurrogate(current[length - 1])) {
+					next[0] = current[--length];
+					carry = 1;
+				}
+				int nextFilled = eof ? 0 : fill(message, next, carry);
+				last = nextFilled == 0;
+
+				String fragment = new String(current, 0, length);
+				awaitWrite(first ? ws.sendTextFrame(fragment, last, 0) : ws.sendContinuationFrame(fragment, last, 0));
+
+				char[] tmp = current;
+				current = next;
+				next = tmp;
+				filled = nextFilled;
+				first = false;
+			} while (!last);
+		}
+		return this;
+	}
+
+	/**
+	 * Send an {@link InputStream}, a {@link Reader}, a {@link Path} or a {@link FileChannel} like the matching
+	 * {@code sendMessage} method, without blocking. The fragments are read and written by a thread of the transport,
+	 * the messages streamed being sent one after the other. A message sent meanwhile by another method may be sent
+	 * before a message streamed, never between its fragments.
+	 *
+	 * @param message the message
+	 * @return a {@link CompletableFuture} completed once the last fragment has been flushed
+	 */
+	public CompletableFuture<Void> streamMessageAsync(final Object message) {
+		if (!(message instanceof InputStream || message instanceof Reader || message instanceof Path
+				|| message instanceof FileChannel)) {
+			throw new IllegalArgumentException("Can't stream " + message.getClass().getName());
+		}
+
+		final CompletableFuture<Void> written = new CompletableFuture<Void>();
+		streamer.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (message instanceof InputStream) {
+						sendMessage((InputStream) message);
+					} else if (message instanceof Reader) {
+						sendMessage((Reader) message);
+					} else if (message instanceof Path) {
+						sendMessage((Path) message);
+					} else {
+						sendMessage((FileChannel) message);
+					}
+					written.complete(null);
+				} catch (Throwable t) {
+					written.completeExceptionally(t);
+				}
+			}
+		});
+		return written;
+	}
+
+	private static int fill(InputStream is, byte[] buffer) throws IOException {
+		int length = 0;
+		int n;
+		while (length < buffer.length && -1 != (n = is.read(buffer, length, buffer.length - length))) {
+			length += n;
+		}
+		return length;
+	}
+
+	private static int fill(Reader reader, char[] buffer, int offset) throws IOException {
+		int length = offset;
+		int n;
+		while (length < buffer.length && -1 != (n = reader.read(buffer, length, buffer.length - length))) {
+			length += n;
+		}
+		return length;
+	}
+
+	/**
+	 * Wait for a fragment to be written. Waiting is skipped when invoked from the channel's event loop, as it would
+	 * deadlock.
+	 *
+	 * @return true if the fragment has been written
+	 */
+	private static boolean awaitWrite(io.netty.util.concurrent.Future<Void> f) throws IOException {
+		if (!f.isDone()) {
+			if (f instanceof ChannelFuture && ((ChannelFuture) f).channel().eventLoop().inEventLoop()) {
+				return false;
+			}
+			try {
+				f.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		if (!f.isSuccess()) {
+			throw new IOException(f.cause());
+		}
+		return true;
+	}
+
+	/**
+	 * Invoked when a message, or the reassembled fragments of a message, exceeds {@link Options#maxMessageSize()}.
+	 * The connection is closed with status 1009 and the remaining fragments of the message are discarded.
+	 *
+	 * @param size the size of the message received so far
+	 */
+	protected void onMessageTooBig(long size) {
+		IOException e = new IOException("Message of at least " + size + " exceeds the maximum size of " + options.maxMessageSize());
+		logger.warn("{} for {}", e.getMessage(), webSocket);
+		NettyWebSocket ws = webSocket;
+		if (ws != null && ws.isOpen()) {
+			ws.sendCloseFrame(1009, "Message too big");
+		}
+		TransportsUtil.invokeFunction(ERROR, decoders, functions, e.getClass(), e, ERROR.name(), resolver);
+	}
+
+	private boolean tooBig(long size) {
+		return options.maxMessageSize() > 0 && size > options.maxMessageSize();
+	}
+
+	/**
+	 * Reassemble the fragments of a message in a pooled buffer, before AHC decodes them: a text message is decoded
+	 * once complete, so a character split between two fragments is preserved. Every message, fragmented or not, is
+	 * limited to {@link Options#maxMessageSize()} bytes; the fragments of a message exceeding it are discarded as
+	 * they arrive, and the connection is closed.
+	 */
+	private final class FragmentAggregator extends ChannelInboundHandlerAdapter {
+
+		private ByteBuf fragments;
+		private boolean text;
+		private int rsv;
+		private boolean discard;
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (!(msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame
+					|| msg instanceof ContinuationWebSocketFrame)) {
+				ctx.fireChannelRead(msg);
+				return;
+			}
+
+			WebSocketFrame frame = (WebSocketFrame) msg;
+			if (frame instanceof ContinuationWebSocketFrame) {
+				if (discard) {
+					discard = !frame.isFinalFragment();
+					frame.release();
+					return;
+				} else if (fragments == null) {
+					// Not expected, let AHC deal with it
+					ctx.fireChannelRead(msg);
+					return;
+				}
+			} else {
+				// A new message, the previous one can't be completed anymore
+				release();
+				discard = false;
+			}
+
+			long size = (fragments == null ? 0L : fragments.readableBytes()) + frame.content().readableBytes();
+			if (tooBig(size)) {
+				release();
+				discard = !frame.isFinalFragment();
+				frame.release();
+				onMessageTooBig(size);
+				return;
+			}
+
+			if (fragments == null) {
+				if (frame.isFinalFragment()) {
+					ctx.fireChannelRead(msg);
+					return;
+				}
+				text = frame instanceof TextWebSocketFrame;
+				rsv = frame.rsv();
+				fragments = NettyResources.allocator().buffer(frame.content().readableBytes() * 2);
+			}
+			try {
+				fragments.writeBytes(frame.content());
+			} finally {
+				frame.release();
+			}
+
+			if (frame.isFinalFragment()) {
+				ByteBuf content = fragments;
+				fragments = null;
+				ctx.fireChannelRead(text ? new TextWebSocketFrame(true, rsv, content) : new BinaryWebSocketFrame(true, rsv, content));
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			release();
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void handlerRemoved(ChannelHandlerContext ctx) {
+			release();
+		}
+
+		private void release() {
+			if (fragments != null) {
+				fragments.release();
+				fragments = null;
+			}
+		}
+	}
+
 	private final class TextListener implements WebSocketListener {
 
 		@Override
 		public void onTextFrame(String message, boolean finalFragment, int rsv) {
+			heartbeatMonitor.touch();
+
 			logger.trace("onMessage {} for {}", message, webSocket);
 			logger.trace("{} received {}", name(), message);
 			if (protocolReceived || message.length() > 0) {
@@ -406,6 +1117,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 				if (connectOperationFuture != null && protocolEnabled) {
 					unlockFuture();
 				}
+				armHeartbeatMonitor();
 			}
 			protocolReceived = true;
 		}
@@ -419,6 +1131,9 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 				return;
 
 			closed.set(false);
+			if (outbound != null) {
+				outbound.open();
+			}
 			Event newStatus = status.equals(Socket.STATUS.INIT) ? OPEN : REOPENED;
 			status = Socket.STATUS.OPEN;
 			TransportsUtil.invokeFunction(newStatus, decoders, functions, String.class, newStatus.name(),
@@ -428,7 +1143,8 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 		@Override
 		public void onClose(WebSocket websocket, int code, String reason) {
 			logger.trace("onClose for {}", webSocket);
-			if (closed.get())
+			// Ignore a connection dropped after a heartbeat timeout.
+			if (closed.get() || websocket != webSocket)
 				return;
 
 			close();
@@ -468,6 +1184,8 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 
 		@Override
 		public void onBinaryFrame(byte[] message, boolean finalFragment, int rsv) {
+			heartbeatMonitor.touch();
+
 			logger.trace("{} received {}", name(), message);
 			if (protocolReceived || (message.length > 0 && !Utils.whiteSpace(message))) {
 				TransportsUtil.invokeFunction(MESSAGE, decoders, functions, message.getClass(), message, MESSAGE.name(),
@@ -478,6 +1196,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 				if (connectOperationFuture != null && protocolEnabled) {
 					unlockFuture();
 				}
+				armHeartbeatMonitor();
 			}
 			protocolReceived = true;
 		}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.util.concurrent.ThreadFactory;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Netty resources shared by every {@link org.asynchttpclient.AsyncHttpClient} created by wAsync: one event loop
+ * group sized to the number of cores, one timer and the pooled allocator. The native epoll transport is used when
+ * available. The threads are daemon threads, created lazily and never stopped, so the number of threads stays the
+ * same whatever the number of {@link org.atmosphere.wasync.Socket}.
+ */
+public class NettyResources {
+
+    private final static Logger logger = LoggerFactory.getLogger(NettyResources.class);
+
+    private final static class Holder {
+        final static boolean EPOLL = epollAvailable();
+        final static EventLoopGroup EVENT_LOOP_GROUP = newEventLoopGroup();
+        final static Timer TIMER = new HashedWheelTimer(new DefaultThreadFactory("wasync-timer", true));
+    }
+
+    private NettyResources() {
+    }
+
+    /**
+     * The event loop group shared by every connection.
+     *
+     * @return an {@link EventLoopGroup}, using epoll when available
+     */
+    public static EventLoopGroup eventLoopGroup() {
+        return Holder.EVENT_LOOP_GROUP;
+    }
+
+    /**
+     * The channel class to use with {@link #eventLoopGroup()}.
+     *
+     * @return the {@link SocketChannel} class
+     */
+    public static Class<? extends SocketChannel> socketChannelClass() {
+        return Holder.EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * The timer shared by every {@link org.asynchttpclient.AsyncHttpClient}.
+     *
+     * @return a {@link Timer}
+     */
+    public static Timer timer() {
+        return Holder.TIMER;
+    }
+
+    /**
+     * The allocator, preferring direct buffers.
+     *
+     * @return {@link PooledByteBufAllocator#DEFAULT}
+     */
+    public static ByteBufAllocator allocator() {
+        return PooledByteBufAllocator.DEFAULT;
+    }
+
+    /**
+     * Is the native epoll transport used.
+     *
+     * @return true if the native epoll transport is used
+     */
+    public static boolean nativeTransport() {
+        return Holder.EPOLL;
+    }
+
+    /**
+     * Is the current thread one of the event loops of a group. Such a thread must not wait for an I/O operation of
+     * the group: with {@link #eventLoopGroup()}, it would stall the connections of every client.
+     *
+     * @param group an {@link EventLoopGroup}, may be null
+     * @return true if the current thread is an event loop of the group
+     */
+    public static boolean inEventLoop(EventLoopGroup group) {
+        if (group != null) {
+            for (EventExecutor e : group) {
+                if (e.inEventLoop()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean epollAvailable() {
+        try {
+            return Epoll.isAvailable();
+        } catch (Throwable t) {
+            // The native library isn't on the classpath
+            logger.trace("", t);
+            return false;
+        }
+    }
+
+    private static EventLoopGroup newEventLoopGroup() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadFactory threadFactory = new DefaultThreadFactory("wasync", true);
+        logger.debug("Creating a shared {} event loop group of {} threads", Holder.EPOLL ? "epoll" : "nio", threads);
+        return Holder.EPOLL ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.util.List;
+import java.util.Map;
+
+import org.asynchttpclient.Request;
+
+/**
+ * An immutable AHC {@link Request}, built once and reused for every poll, reconnect or write of a {@link org.atmosphere.wasync.Socket}.
+ * Building a request encodes the URL and its query string, and copies every header: the template does it once and is
+ * only rebuilt when the tracking id, the query string's parameters or the transport change, or when
+ * {@link #invalidate()} is invoked.
+ * <p/>
+ * A request built from a template with {@link org.asynchttpclient.RequestBuilder#RequestBuilder(Request)} keeps the
+ * already encoded URL, so only the body needs to be set for a write.
+ */
+public abstract class RequestTemplate {
+
+    public final static String TRACKING_ID = "X-Atmosphere-tracking-id";
+
+    private final static class Entry {
+        final Request request;
+        final List<String> trackingId;
+        final int parameters;
+        final Object transport;
+
+        Entry(Request request, List<String> trackingId, int parameters, Object transport) {
+            this.request = request;
+            this.trackingId = trackingId;
+            this.parameters = parameters;
+            this.transport = transport;
+        }
+    }
+
+    private volatile Entry entry;
+
+    /**
+     * Return the template, building it if the query string or the transport changed since the last invocation.
+     *
+     * @param queryString the query string of the {@link org.atmosphere.wasync.Request}
+     * @param transport   the transport in use
+     * @return the template
+     */
+    public Request get(Map<String, List<String>> queryString, Object transport) {
+        // The tracking id is replaced, never mutated, when the Atmosphere Protocol handshake occurs.
+        List<String> trackingId = queryString.get(TRACKING_ID);
+        int parameters = queryString.size();
+
+        Entry e = entry;
+        if (e == null || e.trackingId != trackingId || e.parameters != parameters || e.transport != transport) {
+            e = new Entry(build(queryString), trackingId, parameters, transport);
+            entry = e;
+        }
+        return e.request;
+    }
+
+    /**
+     * Discard the template, for example when a header changed. The next invocation of {@link #get} rebuilds it.
+     */
+    public void invalidate() {
+        entry = null;
+    }
+
+    /**
+     * Build the template.
+     *
+     * @param queryString the query string of the {@link org.atmosphere.wasync.Request}
+     * @return an AHC {@link Request}
+     */
+    protected abstract Request build(Map<String, List<String>> queryString);
+}
@@ -15,6 +15,13 @@
  */
 package org.atmosphere.wasync.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
 public class Utils {
 
     public final static boolean whiteSpace(byte[] b) {
@@ -23,4 +30,23 @@ public class Utils {
         }
         return i == -1;
     }
+
+    /**
+     * Replace the content of a file. The content is written to a temporary file first, then moved, so a process
+     * killed during the write never leaves a partial file behind.
+     *
+     * @param file    the file
+     * @param content the content
+     * @throws IOException if the file can't be written
+     */
+    public final static void writeAtomically(File file, byte[] content) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, content);
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.asynchttpclient.AsyncHttpClient;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.util.NettyResources;
+import org.atmosphere.wasync.transport.NettyServer;
+import org.atmosphere.wasync.transport.NettyServerTest;
+import org.testng.annotations.Test;
+
+public class ClientUtilTest extends NettyServerTest {
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        });
+    }
+
+    private List<AsyncHttpClient> execute(Options options, int clients) throws Exception {
+        List<AsyncHttpClient> l = new ArrayList<AsyncHttpClient>();
+        for (int i = 0; i < clients; i++) {
+            AsyncHttpClient c = ClientUtil.createDefaultAsyncHttpClient(options);
+            l.add(c);
+            assertEquals(c.prepareGet(targetUrl).execute().get(5, TimeUnit.SECONDS).getStatusCode(), 200);
+        }
+        return l;
+    }
+
+    private static void close(List<AsyncHttpClient> clients) throws Exception {
+        for (AsyncHttpClient c : clients) {
+            c.close();
+        }
+    }
+
+    @Test
+    public void testSharedEventLoopGroup() throws Exception {
+        Options options = ClientFactory.getDefault().newClient().newOptionsBuilder().build();
+        assertTrue(options.sharedEventLoopGroup());
+
+        // Warm up the shared resources
+        close(execute(options, 1));
+        int threads = Thread.activeCount();
+
+        List<AsyncHttpClient> clients = execute(options, 20);
+        try {
+            for (AsyncHttpClient c : clients) {
+                assertSame(c.getConfig().getEventLoopGroup(), NettyResources.eventLoopGroup());
+                assertSame(c.getConfig().getNettyTimer(), NettyResources.timer());
+            }
+            assertTrue(Thread.activeCount() <= threads + 2, Thread.activeCount() + " threads, " + threads + " expected");
+        } finally {
+            close(clients);
+        }
+
+        // Closing a client must not stop the shared event loop group
+        assertTrue(!NettyResources.eventLoopGroup().isShuttingDown());
+        close(execute(options, 1));
+    }
+
+    @Test
+    public void testDedicatedEventLoopGroup() throws Exception {
+        Options options = ClientFactory.getDefault().newClient().newOptionsBuilder().sharedEventLoopGroup(false).build();
+
+        List<AsyncHttpClient> clients = execute(options, 2);
+        try {
+            assertEquals(clients.get(0).getConfig().getEventLoopGroup(), null);
+            assertNotSame(clients.get(0).getConfig().getNettyTimer(), NettyResources.timer());
+        } finally {
+            close(clients);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.transport.LoopbackServer;
+import org.atmosphere.wasync.transport.NettyServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ConcurrentFireTest {
+
+    private final static String URI = "loopback://concurrent";
+    private final static int THREADS = 8;
+    private final static int MESSAGES = 500;
+
+    private ExecutorService pool;
+    private LoopbackServer server;
+
+    @BeforeMethod
+    public void create() {
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterMethod
+    public void destroy() {
+        pool.shutdownNow();
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    @Test
+    public void testEachFireGetsItsOwnFuture() throws Exception {
+        final AtomicInteger received = new AtomicInteger();
+        server = LoopbackServer.bind(URI, new LoopbackServer.Handler() {
+            @Override
+            public void onOpen(LoopbackServer.Connection connection) {
+            }
+
+            @Override
+            public void onMessage(LoopbackServer.Connection connection, Object message) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onClose(LoopbackServer.Connection connection) {
+            }
+        });
+
+        Client client = ClientFactory.getDefault().newClient();
+        final Socket socket = client.create().open(client.newRequestBuilder()
+                .uri(URI)
+                .transport(Request.TRANSPORT.LOOPBACK)
+                .build());
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<java.util.concurrent.Future<List<Future>>> producers = new ArrayList<java.util.concurrent.Future<List<Future>>>();
+        for (int i = 0; i < THREADS; i++) {
+            producers.add(pool.submit(new Callable<List<Future>>() {
+                @Override
+                public List<Future> call() throws Exception {
+                    start.await();
+                    List<Future> futures = new ArrayList<Future>();
+                    for (int j = 0; j < MESSAGES; j++) {
+                        futures.add(socket.fire("m" + j));
+                    }
+                    return futures;
+                }
+            }));
+        }
+        start.countDown();
+
+        List<Future> futures = new ArrayList<Future>();
+        for (java.util.concurrent.Future<List<Future>> p : producers) {
+            futures.addAll(p.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(received.get(), THREADS * MESSAGES);
+        for (Future f : futures) {
+            assertTrue(f.isDone());
+        }
+        assertNotSame(futures.get(0), futures.get(1));
+        socket.close();
+    }
+
+    @Test
+    public void testEachFailedFireFailsItsOwnFuture() throws Exception {
+        // Streams GETs, refuses the POSTs of odd messages by closing the connection and accepts the others
+        NettyServer server = NettyServer.start(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                        if (request.method().equals(HttpMethod.POST)) {
+                            String body = request.content().toString(StandardCharsets.UTF_8);
+                            if (Integer.parseInt(body.substring(body.indexOf('-') + 1)) % 2 == 1) {
+                                ctx.close();
+                                return;
+                            }
+                            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                            ctx.writeAndFlush(response);
+                            return;
+                        }
+
+                        DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                        response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                        ctx.write(response);
+                        ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8)));
+                    }
+                });
+            }
+        });
+
+        Client client = ClientFactory.getDefault().newClient();
+        final Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        try {
+            socket.open(client.newRequestBuilder()
+                    .method(Request.METHOD.GET)
+                    .uri(server.url())
+                    .transport(Request.TRANSPORT.STREAMING)
+                    .build(), 10, TimeUnit.SECONDS);
+
+            final int messages = 10;
+            final CountDownLatch start = new CountDownLatch(1);
+            List<java.util.concurrent.Future<List<Future>>> producers = new ArrayList<java.util.concurrent.Future<List<Future>>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                producers.add(pool.submit(new Callable<List<Future>>() {
+                    @Override
+                    public List<Future> call() throws Exception {
+                        start.await();
+                        List<Future> futures = new ArrayList<Future>();
+                        for (int j = 0; j < messages; j++) {
+                            futures.add(socket.fire(thread + "-" + j));
+                        }
+                        return futures;
+                    }
+                }));
+            }
+            start.countDown();
+
+            for (java.util.concurrent.Future<List<Future>> p : producers) {
+                List<Future> futures = p.get(10, TimeUnit.SECONDS);
+                for (int j = 0; j < messages; j++) {
+                    try {
+                        futures.get(j).get(10, TimeUnit.SECONDS);
+                        assertEquals(j % 2, 0, "Message " + j + " has been refused");
+                    } catch (ExecutionException e) {
+                        assertEquals(j % 2, 1, "Message " + j + " has been accepted");
+                        assertTrue(e.getCause() instanceof IOException);
+                    }
+                }
+            }
+        } finally {
+            socket.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testUnhandledFailureThrownOnce() throws Exception {
+        final DefaultFuture future = new DefaultFuture(null);
+        future.ioException(new IOException("failed"));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger thrown = new AtomicInteger();
+        List<java.util.concurrent.Future<?>> callers = new ArrayList<java.util.concurrent.Future<?>>();
+        for (int i = 0; i < THREADS; i++) {
+            callers.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    try {
+                        future.finishOrThrowException();
+                    } catch (IOException e) {
+                        thrown.incrementAndGet();
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+
+        for (java.util.concurrent.Future<?> c : callers) {
+            c.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(thrown.get(), 1);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.atmosphere.wasync.Encoder;
+import org.testng.annotations.Test;
+
+public class EncoderChainTest {
+
+    private final static class Twice implements Encoder<Integer, Integer> {
+        @Override
+        public Integer encode(Integer i) {
+            return i * 2;
+        }
+    }
+
+    private final static class Text implements Encoder<Number, String> {
+        @Override
+        public String encode(Number n) {
+            return "n=" + n;
+        }
+    }
+
+    private final static class Upper implements Encoder<String, String> {
+        @Override
+        public String encode(String s) {
+            return s.toUpperCase();
+        }
+    }
+
+    private static List<Encoder<?, ?>> encoders(Encoder<?, ?>... encoders) {
+        List<Encoder<?, ?>> l = new ArrayList<Encoder<?, ?>>();
+        for (Encoder<?, ?> e : encoders) {
+            l.add(e);
+        }
+        return l;
+    }
+
+    @Test
+    public void testEncodersAppliedInOrderToTheirOutput() {
+        EncoderChain chain = new EncoderChain(encoders(new Twice(), new Text(), new Upper()));
+        assertEquals(chain.encode(21), "N=42");
+        // Only the encoders of a String apply
+        assertEquals(chain.encode("a"), "A");
+        // Twice doesn't apply to a Long
+        assertEquals(chain.encode(21L), "N=21");
+        assertEquals(chain.encode(21), "N=42");
+    }
+
+    @Test
+    public void testEncoderNotAppliedToThePreviousEncoderOutput() {
+        // Upper comes before the String exists
+        EncoderChain chain = new EncoderChain(encoders(new Upper(), new Text()));
+        assertEquals(chain.encode(1), "n=1");
+    }
+
+    @Test
+    public void testUnknownTypeUnchanged() {
+        EncoderChain chain = new EncoderChain(encoders(new Twice()));
+        Object o = new Object();
+        assertEquals(chain.encode(o), o);
+    }
+
+    @Test
+    public void testCompiledFrom() {
+        List<Encoder<?, ?>> l = new CopyOnWriteArrayList<Encoder<?, ?>>(encoders(new Twice()));
+        EncoderChain chain = new EncoderChain(l);
+        assertTrue(chain.compiledFrom(l));
+        assertFalse(chain.compiledFrom(encoders(new Twice())));
+
+        l.add(new Text());
+        assertFalse(chain.compiledFrom(l));
+
+        // An encoder replaced by another one
+        chain = new EncoderChain(l);
+        l.set(1, new Upper());
+        assertFalse(chain.compiledFrom(l));
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.transport.NettyServer;
+import org.atmosphere.wasync.transport.NettyServerTest;
+import org.testng.annotations.Test;
+
+public class HttpWriteTest extends NettyServerTest {
+
+    private final static long DELAY = 500;
+    final static String REFUSED = "refused";
+
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    /**
+     * Answer GETs with a stream, and POSTs with an echo of their body, once {@link #DELAY} has elapsed. The connection
+     * is closed if the body is {@link #REFUSED}.
+     */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(final ChannelHandlerContext ctx, FullHttpRequest request) {
+                if (request.method().equals(HttpMethod.POST)) {
+                    final String body = request.content().toString(StandardCharsets.UTF_8);
+                    if (body.equals(REFUSED)) {
+                        ctx.close();
+                        return;
+                    }
+                    ctx.executor().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                    Unpooled.copiedBuffer("echo:" + body, StandardCharsets.UTF_8));
+                            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+                            ctx.writeAndFlush(response);
+                        }
+                    }, DELAY, TimeUnit.MILLISECONDS);
+                    return;
+                }
+
+                DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                ctx.write(response);
+                ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8)));
+            }
+        });
+    }
+
+    @Test
+    public void testFireDoesNotWaitForTheResponse() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            long start = System.nanoTime();
+            Future first = socket.fire("a");
+            Future second = socket.fire("b");
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < DELAY);
+            assertFalse(first.isDone());
+            assertNull(messages.poll());
+
+            // Both POSTs are pending at once, the responses are dispatched once received
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2 * DELAY);
+            String m = messages.poll(5, TimeUnit.SECONDS) + messages.poll(5, TimeUnit.SECONDS);
+            assertTrue(m.equals("echo:aecho:b") || m.equals("echo:becho:a"), m);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFireAsyncCompletesOnceTheResponseIsDispatched() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            CompletableFuture<Void> written = socket.fireAsync("a").toCompletableFuture();
+            assertFalse(written.isDone());
+            written.get(5, TimeUnit.SECONDS);
+            assertEquals(messages.poll(), "echo:a");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFailedPostFailsItsFuture() throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+
+        try {
+            try {
+                socket.fire(REFUSED).get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException, e.getCause().toString());
+            }
+            // Other writes aren't affected
+            socket.fire("a").get(5, TimeUnit.SECONDS);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFileIsPostedAsBody() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Path file = Files.createTempFile("wasync", ".txt");
+        Files.write(file, "file content".getBytes(StandardCharsets.UTF_8));
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            socket.fireAsync(file).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(messages.poll(), "echo:file content");
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                channel.position(5);
+                socket.fireAsync(channel).toCompletableFuture().get(5, TimeUnit.SECONDS);
+                assertEquals(messages.poll(), "echo:content");
+                assertEquals(channel.position(), 5);
+            } finally {
+                channel.close();
+            }
+        } finally {
+            socket.close();
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.annotations.Test;
+
+public class PendingRepliesTest {
+
+    @Test
+    public void testReplyCompletesItsRequest() throws Exception {
+        PendingReplies replies = new PendingReplies();
+        String a = replies.nextId();
+        String b = replies.nextId();
+        assertNotEquals(a, b);
+
+        CompletableFuture<String> ra = replies.add(a, String.class, 5, TimeUnit.SECONDS);
+        CompletableFuture<String> rb = replies.add(b, String.class, 5, TimeUnit.SECONDS);
+        assertTrue(replies.complete(b, "B"));
+        assertFalse(ra.isDone());
+        assertEquals(rb.get(), "B");
+
+        // Completed once
+        assertFalse(replies.complete(b, "B"));
+        assertEquals(replies.size(), 1);
+    }
+
+    @Test
+    public void testReplyOfAnotherTypeIsIgnored() throws Exception {
+        PendingReplies replies = new PendingReplies();
+        String id = replies.nextId();
+        CompletableFuture<Integer> r = replies.add(id, Integer.class, 5, TimeUnit.SECONDS);
+
+        assertFalse(replies.complete(id, "1"));
+        assertTrue(replies.complete(id, 1));
+        assertEquals(r.get(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testRequestTimesOut() throws Exception {
+        PendingReplies replies = new PendingReplies();
+        CompletableFuture<String> r = replies.add(replies.nextId(), String.class, 50, TimeUnit.MILLISECONDS);
+        CompletableFuture<String> other = replies.add(replies.nextId(), String.class, 5, TimeUnit.SECONDS);
+
+        try {
+            r.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertFalse(other.isDone());
+        assertEquals(replies.size(), 1);
+    }
+
+    @Test
+    public void testCancelledAndFailedRequestsAreForgotten() throws Exception {
+        PendingReplies replies = new PendingReplies();
+        String id = replies.nextId();
+        replies.add(id, String.class, 5, TimeUnit.SECONDS).cancel(false);
+        assertFalse(replies.complete(id, "A"));
+        assertEquals(replies.size(), 0);
+
+        CompletableFuture<String> r = replies.add(replies.nextId(), String.class, 5, TimeUnit.SECONDS);
+        replies.fail(new IOException("Socket closed"));
+        assertTrue(r.isCompletedExceptionally());
+        assertEquals(replies.size(), 0);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.asynchttpclient.RequestBuilder;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.TransportFactory;
+import org.atmosphere.wasync.transport.LoopbackServer;
+import org.atmosphere.wasync.transport.LoopbackTransport;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TransportFactoryTest {
+
+    private final static String URI = "loopback://factory";
+
+    private final Client client = ClientFactory.getDefault().newClient();
+    private LoopbackServer server;
+
+    /**
+     * Listed in META-INF/services.
+     */
+    public static class CountingLoopbackFactory implements TransportFactory {
+
+        final static AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public Request.TRANSPORT name() {
+            return Request.TRANSPORT.LOOPBACK;
+        }
+
+        @Override
+        public Transport newTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
+            created.incrementAndGet();
+            return new LoopbackTransport(request, functions);
+        }
+    }
+
+    @BeforeMethod
+    public void bind() {
+        server = LoopbackServer.bind(URI);
+    }
+
+    @AfterMethod
+    public void unbind() {
+        server.close();
+    }
+
+    private Socket open(Socket socket, Request.TRANSPORT t, final List<String> messages) throws Exception {
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        return socket.open(client.newRequestBuilder().uri(URI).transport(t).build());
+    }
+
+    private void assertConnected(Socket socket, List<String> messages) throws Exception {
+        assertEquals(socket.status(), Socket.STATUS.OPEN);
+        LoopbackServer.Connection connection = server.connections().iterator().next();
+        socket.fire("ping");
+        assertEquals(connection.poll(1, TimeUnit.SECONDS), "ping");
+        connection.send("pong");
+        assertEquals(messages.get(0), "pong");
+        socket.close();
+    }
+
+    @Test
+    public void testRegisteredFactoryReplacesBuiltInTransport() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        Socket socket = client.create(client.newOptionsBuilder().registerTransport(new TransportFactory() {
+            @Override
+            public Request.TRANSPORT name() {
+                return Request.TRANSPORT.STREAMING;
+            }
+
+            @Override
+            public Transport newTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
+                created.incrementAndGet();
+                return new LoopbackTransport(request, functions);
+            }
+        }).build());
+
+        List<String> messages = new ArrayList<String>();
+        assertConnected(open(socket, Request.TRANSPORT.STREAMING, messages), messages);
+        assertEquals(created.get(), 1);
+    }
+
+    @Test
+    public void testFactoryDiscoveredUsingServiceLoader() throws Exception {
+        int created = CountingLoopbackFactory.created.get();
+
+        List<String> messages = new ArrayList<String>();
+        assertConnected(open(client.create(), Request.TRANSPORT.LOOPBACK, messages), messages);
+        assertTrue(CountingLoopbackFactory.created.get() > created);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testRegisteredTransport() throws Exception {
+        Transport transport = new LoopbackTransport(client.newRequestBuilder().uri(URI).build(), new ArrayList<FunctionWrapper>());
+        Socket socket = client.create(client.newOptionsBuilder().registerTransport(transport).build());
+
+        List<String> messages = new ArrayList<String>();
+        assertConnected(open(socket, Request.TRANSPORT.LOOPBACK, messages), messages);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.transport.NettyServer;
+import org.atmosphere.wasync.transport.NettyServerTest;
+import org.atmosphere.wasync.transport.TransportCache;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TransportRaceTest extends NettyServerTest {
+
+    private volatile boolean rejectWebSocket;
+    private volatile boolean silent;
+    private volatile long delay;
+    private volatile CountDownLatch webSocketClosed;
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    @BeforeMethod
+    public void reset() {
+        rejectWebSocket = false;
+        silent = false;
+        delay = 0;
+        webSocketClosed = new CountDownLatch(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(final ChannelHandlerContext ctx, FullHttpRequest request) {
+                if (request.headers().contains(HttpHeaderNames.UPGRADE)) {
+                    if (rejectWebSocket) {
+                        DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_IMPLEMENTED);
+                        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                    } else {
+                        // Never answer the handshake
+                        ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(io.netty.channel.ChannelFuture future) {
+                                webSocketClosed.countDown();
+                            }
+                        });
+                    }
+                    return;
+                }
+                if (silent) {
+                    // Never answer the request
+                    return;
+                }
+
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                        response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                        ctx.write(response);
+                        ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8)));
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private Socket open(long stagger, final BlockingQueue<String> messages, final BlockingQueue<Throwable> errors) throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().transportRaceStagger(stagger).reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).on(Event.ERROR, new Function<Throwable>() {
+            @Override
+            public void on(Throwable t) {
+                errors.add(t);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testNextTransportWinsAfterStagger() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        BlockingQueue<Throwable> errors = new LinkedBlockingQueue<Throwable>();
+
+        long start = System.currentTimeMillis();
+        Socket socket = open(200, messages, errors);
+        try {
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertEquals(socket.status(), Socket.STATUS.OPEN);
+
+            // The pending WebSocket handshake has been aborted
+            assertTrue(webSocketClosed.await(5, TimeUnit.SECONDS));
+            assertNull(errors.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testNextTransportStartsWhenPreferredFails() throws Exception {
+        rejectWebSocket = true;
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        BlockingQueue<Throwable> errors = new LinkedBlockingQueue<Throwable>();
+
+        long start = System.currentTimeMillis();
+        Socket socket = open(30000, messages, errors);
+        try {
+            // No need to wait for the stagger
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertEquals(socket.status(), Socket.STATUS.OPEN);
+
+            // The failure of the WebSocket isn't reported
+            assertNull(errors.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testSlowTransportWinsWithoutRaceTimeout() throws Exception {
+        delay = 1000;
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = client.create(client.newOptionsBuilder()
+                .transportRaceStagger(200)
+                .waitBeforeUnlocking(100)
+                .reconnect(false)
+                .build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+
+        socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build());
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertEquals(socket.status(), Socket.STATUS.OPEN);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testRaceEndsAfterRaceTimeout() throws Exception {
+        silent = true;
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<Throwable>();
+        TransportCache cache = new TransportCache(1, TimeUnit.MINUTES);
+        Socket socket = client.create(client.newOptionsBuilder()
+                .transportRaceStagger(200)
+                .transportRaceTimeout(500)
+                .transportCache(cache)
+                .reconnect(false)
+                .build());
+        socket.on(Event.ERROR, new Function<Throwable>() {
+            @Override
+            public void on(Throwable t) {
+                errors.add(t);
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        Socket opened = socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build());
+        try {
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertTrue(errors.poll(5, TimeUnit.SECONDS) instanceof IOException);
+            assertNotEquals(opened.status(), Socket.STATUS.OPEN);
+
+            // The pending WebSocket handshake has been aborted
+            assertTrue(webSocketClosed.await(5, TimeUnit.SECONDS));
+
+            // Missing the deadline doesn't mean the transports aren't supported
+            assertNull(cache.supported(targetUrl, Request.TRANSPORT.WEBSOCKET));
+            assertNull(cache.supported(targetUrl, Request.TRANSPORT.STREAMING));
+        } finally {
+            socket.close();
+        }
+    }
+}
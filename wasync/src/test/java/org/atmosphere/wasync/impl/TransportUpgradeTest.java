@@ -0,0 +1,218 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.transport.NettyServer;
+import org.atmosphere.wasync.transport.NettyServerTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TransportUpgradeTest extends NettyServerTest {
+
+    private volatile boolean rejectWebSocket;
+    private volatile Channel stream;
+    private volatile String webSocketUri;
+    private volatile CountDownLatch streamClosed;
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    /**
+     * Answer requests with a stream. Once a WebSocket is opened, a last message is sent using the stream, then a
+     * message using the WebSocket. The messages received by the WebSocket are echoed.
+     */
+    @BeforeMethod
+    public void reset() {
+        rejectWebSocket = false;
+        streamClosed = new CountDownLatch(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch,
+                new SimpleChannelInboundHandler<FullHttpRequest>() {
+                    @Override
+                    protected void channelRead0(final ChannelHandlerContext ctx, FullHttpRequest request) {
+                        if (request.headers().contains(HttpHeaderNames.UPGRADE)) {
+                            webSocketUri = request.uri();
+                            if (rejectWebSocket) {
+                                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_IMPLEMENTED);
+                                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                                return;
+                            }
+
+                            WebSocketServerHandshaker handshaker = new WebSocketServerHandshakerFactory(targetUrl, null, false)
+                                    .newHandshaker(request);
+                            handshaker.handshake(ctx.channel(), request).addListener(new ChannelFutureListener() {
+                                @Override
+                                public void operationComplete(ChannelFuture future) {
+                                    stream.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("late", StandardCharsets.UTF_8)))
+                                            .addListener(new ChannelFutureListener() {
+                                                @Override
+                                                public void operationComplete(ChannelFuture future) {
+                                                    ctx.channel().writeAndFlush(new TextWebSocketFrame("world"));
+                                                }
+                                            });
+                                }
+                            });
+                            return;
+                        }
+
+                        stream = ctx.channel();
+                        stream.closeFuture().addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(ChannelFuture future) {
+                                streamClosed.countDown();
+                            }
+                        });
+                        DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                        response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                        ctx.write(response);
+                        ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8)));
+                    }
+                },
+                new SimpleChannelInboundHandler<TextWebSocketFrame>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) {
+                        ctx.writeAndFlush(new TextWebSocketFrame("echo:" + frame.text()));
+                    }
+                });
+    }
+
+    private Socket open(final BlockingQueue<String> messages, final BlockingQueue<Request.TRANSPORT> transports, final BlockingQueue<Object> events) throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().upgradeToWebSocket(500).reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).on(Event.TRANSPORT, new Function<Request.TRANSPORT>() {
+            @Override
+            public void on(Request.TRANSPORT t) {
+                transports.add(t);
+            }
+        }).on(Event.CLOSE, new Function<String>() {
+            @Override
+            public void on(String s) {
+                events.add(Event.CLOSE);
+            }
+        }).on(Event.ERROR, new Function<Throwable>() {
+            @Override
+            public void on(Throwable t) {
+                events.add(t);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .queryString("X-Atmosphere-tracking-id", "1234")
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testStreamUpgradedToWebSocket() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        BlockingQueue<Request.TRANSPORT> transports = new LinkedBlockingQueue<Request.TRANSPORT>();
+        BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+        Socket socket = open(messages, transports, events);
+        try {
+            assertEquals(transports.poll(5, TimeUnit.SECONDS), Request.TRANSPORT.STREAMING);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            // The messages of the stream are dispatched first
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "late");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "world");
+            assertEquals(transports.poll(5, TimeUnit.SECONDS), Request.TRANSPORT.WEBSOCKET);
+            assertTrue(webSocketUri.contains("X-Atmosphere-tracking-id=1234"));
+            assertTrue(streamClosed.await(5, TimeUnit.SECONDS));
+
+            // Neither closed nor failed
+            assertEquals(socket.status(), Socket.STATUS.OPEN);
+            socket.fire("ping");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "echo:ping");
+            assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testStreamKeptWhenUpgradeFails() throws Exception {
+        rejectWebSocket = true;
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        BlockingQueue<Request.TRANSPORT> transports = new LinkedBlockingQueue<Request.TRANSPORT>();
+        BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+        Socket socket = open(messages, transports, events);
+        try {
+            assertEquals(transports.poll(5, TimeUnit.SECONDS), Request.TRANSPORT.STREAMING);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (webSocketUri == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // The failure of the WebSocket isn't reported
+            assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+            assertNull(transports.poll());
+            assertEquals(socket.status(), Socket.STATUS.OPEN);
+            assertEquals(streamClosed.getCount(), 1);
+
+            stream.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("again", StandardCharsets.UTF_8)));
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "again");
+        } finally {
+            socket.close();
+        }
+    }
+}
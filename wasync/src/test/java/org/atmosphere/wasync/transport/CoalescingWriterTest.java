@@ -0,0 +1,108 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CoalescingWriterTest {
+
+    private EmbeddedChannel channel;
+
+    @BeforeMethod
+    public void create() {
+        channel = new EmbeddedChannel();
+    }
+
+    @AfterMethod
+    public void destroy() {
+        channel.finishAndReleaseAll();
+    }
+
+    private String readText() {
+        TextWebSocketFrame frame = channel.readOutbound();
+        String text = frame.text();
+        frame.release();
+        return text;
+    }
+
+    @Test
+    public void testFramesFlushedOnceTheLingerElapsed() throws Exception {
+        CoalescingWriter writer = new CoalescingWriter(50, 65536, null);
+        CompletableFuture<Void> a = writer.write(channel, "a");
+        CompletableFuture<Void> b = writer.write(channel, "b");
+
+        assertNull(channel.readOutbound());
+        assertFalse(a.isDone());
+
+        Thread.sleep(100);
+        channel.runScheduledPendingTasks();
+        assertEquals(readText(), "a");
+        assertEquals(readText(), "b");
+        assertTrue(a.isDone() && b.isDone());
+    }
+
+    @Test
+    public void testBatchSizeTriggersFlush() {
+        CoalescingWriter writer = new CoalescingWriter(60000, 4, null);
+        writer.write(channel, "ab");
+        assertNull(channel.readOutbound());
+
+        CompletableFuture<Void> cd = writer.write(channel, "cd");
+        assertTrue(cd.isDone());
+        assertEquals(readText(), "ab");
+        assertEquals(readText(), "cd");
+    }
+
+    @Test
+    public void testTextMessagesBatchedInOneFrame() {
+        CoalescingWriter writer = new CoalescingWriter(60000, 65536, "|");
+        CompletableFuture<Void> a = writer.write(channel, "hello");
+        CompletableFuture<Void> b = writer.write(channel, "héllo");
+        CompletableFuture<Void> c = writer.write(channel, new byte[]{1, 2});
+        assertNull(channel.readOutbound());
+
+        writer.flush();
+        assertEquals(readText(), "5|hello5|héllo");
+        BinaryWebSocketFrame binary = channel.readOutbound();
+        assertEquals(binary.content().readableBytes(), 2);
+        binary.release();
+        assertTrue(a.isDone() && b.isDone() && c.isDone());
+    }
+
+    @Test
+    public void testPreviousChannelFlushedOnReconnect() {
+        CoalescingWriter writer = new CoalescingWriter(60000, 65536, null);
+        writer.write(channel, "a");
+
+        EmbeddedChannel reconnected = new EmbeddedChannel();
+        writer.write(reconnected, "b");
+        assertEquals(readText(), "a");
+        assertNull(reconnected.readOutbound());
+        reconnected.finishAndReleaseAll();
+    }
+}
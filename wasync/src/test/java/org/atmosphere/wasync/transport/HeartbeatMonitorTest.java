@@ -0,0 +1,114 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.impl.AtmosphereClient;
+import org.atmosphere.wasync.impl.AtmosphereRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class HeartbeatMonitorTest {
+
+    private ScheduledExecutorService timer;
+
+    @BeforeMethod
+    public void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void testTimeoutWhenNothingIsRead() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        HeartbeatMonitor monitor = new HeartbeatMonitor(timer, new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(monitor.arm(50, 2));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNoTimeoutWhileReading() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        HeartbeatMonitor monitor = new HeartbeatMonitor(timer, new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(monitor.arm(100, 3));
+        for (int i = 0; i < 10; i++) {
+            monitor.touch();
+            assertFalse(latch.await(50, TimeUnit.MILLISECONDS));
+        }
+        monitor.disarm();
+        assertFalse(monitor.isArmed());
+    }
+
+    @Test
+    public void testDisabled() {
+        HeartbeatMonitor monitor = new HeartbeatMonitor(timer, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+
+        assertFalse(monitor.arm(100, 0));
+        assertFalse(monitor.arm(-1, 2));
+        assertFalse(monitor.isArmed());
+    }
+
+    @Test
+    public void testHeartbeatIntervalFromHandshake() {
+        AtmosphereClient client = ClientFactory.getDefault().newClient(AtmosphereClient.class);
+        AtmosphereRequest request = client.newRequestBuilder()
+                .uri("http://127.0.0.1:8080")
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .build();
+
+        assertEquals(HeartbeatMonitor.heartbeatInterval(request), -1);
+
+        TransportsUtil.invokeFunction(request.decoders(), new ArrayList<FunctionWrapper>(), String.class,
+                "8c9ad0a4-6dc7-4d2b-a0b8-3d6bcd6d6f1d|5000|X|", "MESSAGE", FunctionResolver.DEFAULT);
+
+        assertEquals(HeartbeatMonitor.heartbeatInterval(request), 5000);
+        assertEquals(request.queryString().get("X-Atmosphere-tracking-id").get(0), "8c9ad0a4-6dc7-4d2b-a0b8-3d6bcd6d6f1d");
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the {@link Http2Transport} against a Netty HTTP/2 server, using HTTP/2 with prior knowledge.
+ */
+public class Http2TransportTest extends NettyServerTest {
+
+    private volatile Http2Settings settings;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final BlockingQueue<ChannelHandlerContext> streams = new LinkedBlockingQueue<ChannelHandlerContext>();
+    private final BlockingQueue<String> posts = new LinkedBlockingQueue<String>();
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    /**
+     * Answer every GET with a stream which stays open, and echo every POST.
+     */
+    final class StreamHandler extends ChannelInboundHandlerAdapter {
+
+        private final StringBuilder body = new StringBuilder();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                if (msg instanceof Http2HeadersFrame) {
+                    Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+                    if (frame.headers().method().toString().equals("GET")) {
+                        ctx.write(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().status("200")));
+                        ctx.writeAndFlush(data("hello", false));
+                        streams.add(ctx);
+                    }
+                } else if (msg instanceof Http2DataFrame) {
+                    Http2DataFrame frame = (Http2DataFrame) msg;
+                    body.append(frame.content().toString(StandardCharsets.UTF_8));
+                    if (frame.isEndStream()) {
+                        posts.add(body.toString());
+                        ctx.write(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().status("200")));
+                        ctx.writeAndFlush(data("echo:" + body, true));
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+
+    static DefaultHttp2DataFrame data(String s, boolean endStream) {
+        ByteBuf b = Unpooled.copiedBuffer(s, StandardCharsets.UTF_8);
+        return new DefaultHttp2DataFrame(b, endStream);
+    }
+
+    @BeforeMethod
+    public void reset() {
+        settings = Http2Settings.defaultSettings();
+        connections.set(0);
+        streams.clear();
+        posts.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        connections.incrementAndGet();
+        ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().initialSettings(settings).build(),
+                new Http2MultiplexHandler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel ch) {
+                        ch.pipeline().addLast(new StreamHandler());
+                    }
+                }));
+    }
+
+    private Socket open(final BlockingQueue<String> messages) throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().waitBeforeUnlocking(2000).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).on(Event.REOPENED, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.HTTP2)
+                .build());
+    }
+
+    @Test
+    public void testSocketsShareOneConnection() throws Exception {
+        List<Socket> sockets = new ArrayList<Socket>();
+        List<BlockingQueue<String>> messages = new ArrayList<BlockingQueue<String>>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                BlockingQueue<String> m = new LinkedBlockingQueue<String>();
+                messages.add(m);
+                sockets.add(open(m));
+            }
+            for (BlockingQueue<String> m : messages) {
+                assertEquals(m.poll(5, TimeUnit.SECONDS), "hello");
+            }
+            assertEquals(streams.size(), 20);
+            assertEquals(connections.get(), 1);
+        } finally {
+            for (Socket s : sockets) {
+                s.close();
+            }
+        }
+        assertEquals(Http2ConnectionPool.getDefault().connections(), 0);
+    }
+
+    @Test
+    public void testStreamsStayBelowTheServerLimit() throws Exception {
+        settings = Http2Settings.defaultSettings().maxConcurrentStreams(4);
+
+        List<Socket> sockets = new ArrayList<Socket>();
+        List<BlockingQueue<String>> messages = new ArrayList<BlockingQueue<String>>();
+        try {
+            for (int i = 0; i < 6; i++) {
+                BlockingQueue<String> m = new LinkedBlockingQueue<String>();
+                messages.add(m);
+                sockets.add(open(m));
+                assertEquals(m.poll(5, TimeUnit.SECONDS), "hello");
+            }
+            // Three sockets per connection, leaving a stream to the writes
+            assertEquals(connections.get(), 2);
+
+            for (int i = 0; i < sockets.size(); i++) {
+                sockets.get(i).fire("ping" + i);
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                assertEquals(messages.get(i).poll(5, TimeUnit.SECONDS), "echo:ping" + i);
+            }
+        } finally {
+            for (Socket s : sockets) {
+                s.close();
+            }
+        }
+        assertEquals(Http2ConnectionPool.getDefault().connections(), 0);
+    }
+
+    @Test
+    public void testWriteUsesAnotherStream() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(messages);
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            socket.fire("ping");
+            assertEquals(posts.poll(5, TimeUnit.SECONDS), "ping");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "echo:ping");
+
+            // The stream of the socket is still open
+            streams.peek().writeAndFlush(data("pushed", false));
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "pushed");
+            assertEquals(connections.get(), 1);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFileIsSentAsFlowControlledFrames() throws Exception {
+        // Bigger than the stream's initial flow-control window
+        StringBuilder b = new StringBuilder();
+        while (b.length() < 200 * 1024) {
+            b.append("0123456789abcdef");
+        }
+        String payload = b.toString();
+        Path file = Files.createTempFile("wasync", ".txt");
+        Files.write(file, payload.getBytes(StandardCharsets.UTF_8));
+
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(messages);
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            socket.fire(file);
+            assertEquals(posts.poll(5, TimeUnit.SECONDS), payload);
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                channel.position(16);
+                socket.fire(channel);
+                assertEquals(posts.poll(5, TimeUnit.SECONDS), payload.substring(16));
+                assertEquals(channel.position(), 16);
+                assertTrue(channel.isOpen());
+            } finally {
+                channel.close();
+            }
+        } finally {
+            socket.close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReconnectWhenStreamEnds() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(messages);
+        try {
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            ChannelHandlerContext first = streams.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+
+            first.writeAndFlush(data("bye", true));
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "bye");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), Event.REOPENED.name());
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertNotNull(streams.poll(5, TimeUnit.SECONDS));
+            assertEquals(connections.get(), 1);
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.impl.AtmosphereClient;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the {@link LongPollingTransport} against a Netty server which holds every poll until the test answers it.
+ */
+public class LongPollingTransportTest extends NettyServerTest {
+
+    private final BlockingQueue<Poll> polls = new LinkedBlockingQueue<Poll>();
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    static final class Poll {
+        final ChannelHandlerContext ctx;
+        final String trackingId;
+
+        Poll(ChannelHandlerContext ctx, FullHttpRequest request) {
+            this.ctx = ctx;
+            this.trackingId = new QueryStringDecoder(request.uri()).parameters().get("X-Atmosphere-tracking-id").get(0);
+        }
+
+        void start(String body) {
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+            ctx.write(response);
+            ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer(body, StandardCharsets.UTF_8)));
+        }
+
+        void complete() {
+            ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        }
+    }
+
+    @BeforeMethod
+    public void reset() {
+        polls.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                if (request.uri().contains("X-Atmosphere-Transport=close")) {
+                    // The close request of the Atmosphere Protocol
+                    FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                    response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                    ctx.writeAndFlush(response);
+                    return;
+                }
+                polls.add(new Poll(ctx, request));
+            }
+        });
+    }
+
+    private Socket open(int pipelinedPolls, final BlockingQueue<String> messages) throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().waitBeforeUnlocking(100).pipelinedPolls(pipelinedPolls).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .queryString("X-Atmosphere-tracking-id", "1234")
+                .transport(Request.TRANSPORT.LONG_POLLING)
+                .build());
+    }
+
+    @Test
+    public void testNextPollIssuedWhenResponseStarts() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(1, messages);
+        try {
+            Poll first = polls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertNull(polls.poll(200, TimeUnit.MILLISECONDS));
+
+            first.start("hello");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            // The next poll is waiting on the server before the first response completed
+            Poll second = polls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(second);
+            assertEquals(second.trackingId, "1234");
+
+            first.complete();
+            assertNull(polls.poll(200, TimeUnit.MILLISECONDS));
+
+            second.start("world");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "world");
+            assertNotNull(polls.poll(5, TimeUnit.SECONDS));
+            assertTrue(messages.isEmpty());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testPipelineWaitsForTheTrackingId() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        AtmosphereClient client = ClientFactory.getDefault().newClient(AtmosphereClient.class);
+        Socket socket = client.create(client.newOptionsBuilder().waitBeforeUnlocking(100).pipelinedPolls(1).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .enableProtocol(true)
+                .transport(Request.TRANSPORT.LONG_POLLING)
+                .build());
+        try {
+            Poll handshake = polls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(handshake);
+            assertEquals(handshake.trackingId, "0");
+
+            handshake.start("5678|60000|X|");
+            // The next poll carries the tracking id assigned by the server
+            Poll next = polls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next);
+            assertEquals(next.trackingId, "5678");
+            assertNull(polls.poll(200, TimeUnit.MILLISECONDS));
+
+            handshake.complete();
+            next.start("hello");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertEquals(polls.poll(5, TimeUnit.SECONDS).trackingId, "5678");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testPipelineDepth() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(2, messages);
+        try {
+            Poll first = polls.poll(5, TimeUnit.SECONDS);
+            first.start("hello");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+
+            assertNotNull(polls.poll(5, TimeUnit.SECONDS));
+            assertNotNull(polls.poll(5, TimeUnit.SECONDS));
+            first.complete();
+            assertNull(polls.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testWithoutPipelining() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(0, messages);
+        try {
+            Poll first = polls.poll(5, TimeUnit.SECONDS);
+            first.start("hello");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+            assertNull(polls.poll(200, TimeUnit.MILLISECONDS));
+
+            first.complete();
+            assertNotNull(polls.poll(5, TimeUnit.SECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+}
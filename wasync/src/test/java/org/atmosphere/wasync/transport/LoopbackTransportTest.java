@@ -0,0 +1,159 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Encoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class LoopbackTransportTest {
+
+    private final static String URI = "loopback://test";
+
+    private final Client client = ClientFactory.getDefault().newClient();
+    private LoopbackServer server;
+
+    @AfterMethod
+    public void unbind() {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    private Socket open(final List<Object> events) throws IOException {
+        Socket socket = client.create();
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                events.add(m);
+            }
+        }).on(Event.CLOSE, new Function<String>() {
+            @Override
+            public void on(String s) {
+                events.add(Event.CLOSE);
+            }
+        }).on(Event.ERROR, new Function<Throwable>() {
+            @Override
+            public void on(Throwable t) {
+                events.add(t);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .uri(URI)
+                .transport(Request.TRANSPORT.LOOPBACK)
+                .encoder(new Encoder<Integer, String>() {
+                    @Override
+                    public String encode(Integer i) {
+                        return String.valueOf(i);
+                    }
+                })
+                .decoder(new Decoder<String, String>() {
+                    @Override
+                    public String decode(Event e, String s) {
+                        return e.equals(Event.MESSAGE) ? "decoded:" + s : s;
+                    }
+                })
+                .build());
+    }
+
+    @Test
+    public void testWritesAreHandledAndRepliesDispatchedOnTheCallingThread() throws Exception {
+        final List<String> lifecycle = new ArrayList<String>();
+        server = LoopbackServer.bind(URI, new LoopbackServer.Handler() {
+            @Override
+            public void onOpen(LoopbackServer.Connection connection) {
+                lifecycle.add("open");
+            }
+
+            @Override
+            public void onMessage(LoopbackServer.Connection connection, Object message) {
+                connection.send("echo:" + message);
+            }
+
+            @Override
+            public void onClose(LoopbackServer.Connection connection) {
+                lifecycle.add("close");
+            }
+        });
+
+        List<Object> events = new ArrayList<Object>();
+        Socket socket = open(events);
+        assertEquals(socket.status(), Socket.STATUS.OPEN);
+        assertEquals(lifecycle.size(), 1);
+
+        socket.fire(42);
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0), "decoded:echo:42");
+
+        socket.close();
+        assertEquals(events.get(1), Event.CLOSE);
+        assertEquals(lifecycle.get(1), "close");
+        assertTrue(server.connections().isEmpty());
+    }
+
+    @Test
+    public void testServerCapturesWritesAndCloses() throws Exception {
+        server = LoopbackServer.bind(URI);
+
+        List<Object> events = new ArrayList<Object>();
+        Socket socket = open(events);
+        LoopbackServer.Connection connection = server.connections().iterator().next();
+
+        socket.fire("hello");
+        assertEquals(connection.poll(1, TimeUnit.SECONDS), "hello");
+
+        server.broadcast("world");
+        assertEquals(events.get(0), "decoded:world");
+
+        connection.close();
+        assertFalse(connection.isOpen());
+        assertEquals(events.get(1), Event.CLOSE);
+        assertEquals(socket.status(), Socket.STATUS.CLOSE);
+    }
+
+    @Test
+    public void testNoServerBound() throws Exception {
+        List<Object> events = new ArrayList<Object>();
+        Socket socket = open(events);
+
+        assertEquals(socket.status(), Socket.STATUS.ERROR);
+        assertEquals(events.size(), 1);
+        assertTrue(events.get(0) instanceof java.net.ConnectException);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAlreadyBound() {
+        server = LoopbackServer.bind(URI);
+        LoopbackServer.bind(URI);
+    }
+}
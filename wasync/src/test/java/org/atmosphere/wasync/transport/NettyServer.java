@@ -0,0 +1,89 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+
+/**
+ * A Netty server bound to a random port of the loopback interface, standing in for the server of a test.
+ */
+public final class NettyServer {
+
+    private final EventLoopGroup group;
+    private final Channel channel;
+
+    private NettyServer(EventLoopGroup group, Channel channel) {
+        this.group = group;
+        this.channel = channel;
+    }
+
+    /**
+     * Start a server.
+     *
+     * @param initializer initializes the pipeline of every connection accepted
+     * @return the server
+     */
+    public static NettyServer start(ChannelInitializer<SocketChannel> initializer) throws InterruptedException {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        Channel channel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(initializer)
+                .bind("127.0.0.1", 0).sync().channel();
+        return new NettyServer(group, channel);
+    }
+
+    /**
+     * Decode the HTTP requests of a connection into {@link io.netty.handler.codec.http.FullHttpRequest}s, handled by
+     * the handlers.
+     *
+     * @param ch       the connection
+     * @param handlers the handlers, after the HTTP codec
+     */
+    public static void http(SocketChannel ch, ChannelHandler... handlers) {
+        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536));
+        ch.pipeline().addLast(handlers);
+    }
+
+    /**
+     * The url of the server.
+     *
+     * @return the url, ending with a /
+     */
+    public String url() {
+        return "http://127.0.0.1:" + ((InetSocketAddress) channel.localAddress()).getPort() + "/";
+    }
+
+    /**
+     * Close the server and its connections.
+     */
+    public void stop() throws InterruptedException {
+        channel.close().sync();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * The tests running against a {@link NettyServer}, started before every test method and stopped after it.
+ */
+public abstract class NettyServerTest {
+
+    protected String targetUrl;
+    private NettyServer server;
+
+    /**
+     * Initialize the pipeline of a connection accepted by the server, see {@link NettyServer#http}.
+     *
+     * @param ch the connection
+     */
+    protected abstract void initChannel(SocketChannel ch) throws Exception;
+
+    @BeforeMethod
+    public void startServer() throws Exception {
+        server = NettyServer.start(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) throws Exception {
+                NettyServerTest.this.initChannel(ch);
+            }
+        });
+        targetUrl = server.url();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.atmosphere.wasync.Options;
+import org.testng.annotations.Test;
+
+public class OutboundQueueTest {
+
+    private final static class FakeSink implements OutboundQueue.Sink {
+        final List<Object> written = new ArrayList<Object>();
+        volatile boolean writable;
+
+        @Override
+        public synchronized CompletableFuture<Void> write(Object message, boolean flush) {
+            written.add(message);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        @Override
+        public boolean inEventLoop() {
+            return false;
+        }
+    }
+
+    private static Throwable cause(CompletableFuture<Void> f) throws InterruptedException {
+        try {
+            f.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (Exception e) {
+            fail("Not failed", e);
+        }
+        fail("Not failed");
+        return null;
+    }
+
+    @Test
+    public void testWrittenDirectlyWhileWritable() {
+        FakeSink sink = new FakeSink();
+        sink.writable = true;
+        OutboundQueue queue = new OutboundQueue(1, Options.OVERFLOW.FAIL, sink);
+
+        assertTrue(queue.offer("a", true).isDone());
+        assertTrue(queue.offer("b", true).isDone());
+        assertEquals(sink.written.size(), 2);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testQueuedUntilWritableInOrder() {
+        FakeSink sink = new FakeSink();
+        OutboundQueue queue = new OutboundQueue(3, Options.OVERFLOW.FAIL, sink);
+
+        CompletableFuture<Void> a = queue.offer("a", true);
+        CompletableFuture<Void> b = queue.offer("b", true);
+        assertFalse(a.isDone());
+        assertTrue(sink.written.isEmpty());
+
+        sink.writable = true;
+        // Queued messages are written before the new ones
+        assertFalse(queue.offer("c", true).isDone());
+        assertTrue(queue.drain());
+        assertTrue(a.isDone() && b.isDone());
+        assertEquals(sink.written.toString(), "[a, b, c]");
+    }
+
+    @Test
+    public void testFailWhenFull() throws Exception {
+        FakeSink sink = new FakeSink();
+        OutboundQueue queue = new OutboundQueue(1, Options.OVERFLOW.FAIL, sink);
+
+        CompletableFuture<Void> a = queue.offer("a", true);
+        Throwable t = cause(queue.offer("b", true));
+        assertTrue(t instanceof OutboundQueueFull);
+        assertEquals(((OutboundQueueFull) t).size(), 1);
+        assertFalse(a.isDone());
+    }
+
+    @Test
+    public void testDropOldestWhenFull() throws Exception {
+        FakeSink sink = new FakeSink();
+        OutboundQueue queue = new OutboundQueue(1, Options.OVERFLOW.DROP_OLDEST, sink);
+
+        CompletableFuture<Void> a = queue.offer("a", true);
+        CompletableFuture<Void> b = queue.offer("b", true);
+        assertTrue(cause(a) instanceof OutboundQueueFull);
+
+        sink.writable = true;
+        queue.drain();
+        b.get(5, TimeUnit.SECONDS);
+        assertEquals(sink.written.toString(), "[b]");
+    }
+
+    @Test
+    public void testBlockUntilDrained() throws Exception {
+        final FakeSink sink = new FakeSink();
+        final OutboundQueue queue = new OutboundQueue(1, Options.OVERFLOW.BLOCK, sink);
+        queue.offer("a", true);
+
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sink.writable = true;
+                queue.drain();
+            }
+        };
+        t.start();
+
+        long start = System.nanoTime();
+        queue.offer("b", true).get(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        t.join();
+        assertEquals(sink.written.toString(), "[a, b]");
+    }
+
+    @Test
+    public void testCloseFailsQueuedMessages() throws Exception {
+        FakeSink sink = new FakeSink();
+        OutboundQueue queue = new OutboundQueue(1, Options.OVERFLOW.FAIL, sink);
+
+        CompletableFuture<Void> a = queue.offer("a", true);
+        queue.close();
+        assertTrue(cause(a) instanceof IOException);
+        assertTrue(cause(queue.offer("b", true)) instanceof IOException);
+
+        queue.open();
+        sink.writable = true;
+        assertTrue(queue.offer("c", true).isDone());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.util.Random;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * Measure the bandwidth saved and the CPU spent by {@link PerMessageDeflate} on typical Atmosphere broadcast
+ * payloads. Run it with
+ * <blockquote><pre>
+     mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.atmosphere.wasync.transport.PerMessageDeflateBenchmark
+ * </pre></blockquote>
+ */
+public class PerMessageDeflateBenchmark {
+
+    private final static int WARMUP = 20000;
+    private final static int ITERATIONS = 50000;
+    /**
+     * The distinct payload cycled through, twice the 32 KB window of deflate so a message is never found whole in it.
+     */
+    private final static int DISTINCT_BYTES = 64 * 1024;
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 512, 4096, 32768};
+        int[] levels = {1, 6, 9};
+
+        System.out.println(String.format("%-10s %-8s %-14s %-14s %-10s", "size", "level", "bytes/msg", "ratio", "ns/msg"));
+        for (int size : sizes) {
+            // Distinct messages, so the compression context doesn't make every message but the first one free
+            Random random = new Random(0);
+            String[] messages = new String[Math.max(256, DISTINCT_BYTES / size + 1)];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = PerMessageDeflateTest.json(size, random);
+            }
+            run(messages, -1);
+            for (int level : levels) {
+                run(messages, level);
+            }
+        }
+    }
+
+    private static void run(String[] messages, int level) {
+        EmbeddedChannel channel = level < 0 ? new EmbeddedChannel() : new EmbeddedChannel(
+                PerMessageDeflateTest.negotiate(new PerMessageDeflate().compressionLevel(level).minimumSize(0)).newExtensionEncoder());
+
+        send(channel, messages, WARMUP);
+
+        long length = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            length += messages[i % messages.length].length();
+        }
+        long start = System.nanoTime();
+        long bytes = send(channel, messages, ITERATIONS);
+        long elapsed = System.nanoTime() - start;
+
+        channel.finishAndReleaseAll();
+        System.out.println(String.format("%-10d %-8s %-14d %-14.3f %-10d",
+                length / ITERATIONS, level < 0 ? "none" : String.valueOf(level), bytes / ITERATIONS,
+                (double) bytes / length, elapsed / ITERATIONS));
+    }
+
+    private static long send(EmbeddedChannel channel, String[] messages, int count) {
+        long bytes = 0;
+        for (int i = 0; i < count; i++) {
+            channel.writeOutbound(new TextWebSocketFrame(messages[i % messages.length]));
+            WebSocketFrame frame = channel.readOutbound();
+            bytes += frame.content().readableBytes();
+            frame.release();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Random;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import org.testng.annotations.Test;
+
+public class PerMessageDeflateTest {
+
+    static WebSocketClientExtension negotiate(PerMessageDeflate deflate) {
+        return deflate.newHandshaker().handshakeExtension(
+                new WebSocketExtensionData("permessage-deflate", Collections.<String, String>emptyMap()));
+    }
+
+    static String json(int size) {
+        return json(size, new Random(0));
+    }
+
+    static String json(int size, Random random) {
+        String[] symbols = {"ACME", "INTC", "ORCL", "MSFT", "GOOG", "AMZN"};
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; b.length() < size; i++) {
+            b.append("{\"id\":").append(random.nextInt(1000000))
+                    .append(",\"symbol\":\"").append(symbols[random.nextInt(symbols.length)])
+                    .append("\",\"price\":").append(random.nextInt(100000) / 100.0)
+                    .append(",\"currency\":\"USD\"},");
+        }
+        return b.append("{}]").toString();
+    }
+
+    @Test
+    public void testSmallMessagesAreNotCompressed() {
+        EmbeddedChannel channel = new EmbeddedChannel(negotiate(new PerMessageDeflate().minimumSize(256)).newExtensionEncoder());
+
+        channel.writeOutbound(new TextWebSocketFrame("{\"id\":1}"));
+        TextWebSocketFrame frame = channel.readOutbound();
+
+        assertEquals(frame.rsv() & WebSocketExtension.RSV1, 0);
+        assertEquals(frame.text(), "{\"id\":1}");
+        frame.release();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testLargeMessagesRoundTrip() {
+        WebSocketClientExtension extension = negotiate(new PerMessageDeflate().minimumSize(256));
+        EmbeddedChannel encoder = new EmbeddedChannel(extension.newExtensionEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(extension.newExtensionDecoder());
+        String message = json(4096);
+
+        encoder.writeOutbound(new TextWebSocketFrame(message));
+        TextWebSocketFrame compressed = encoder.readOutbound();
+
+        assertTrue((compressed.rsv() & WebSocketExtension.RSV1) != 0);
+        assertTrue(compressed.content().readableBytes() < message.length() / 4);
+
+        decoder.writeInbound(compressed);
+        TextWebSocketFrame decompressed = decoder.readInbound();
+        assertEquals(decompressed.text(), message);
+        decompressed.release();
+
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidWindowBits() {
+        new PerMessageDeflate().serverMaxWindowBits(16);
+    }
+}
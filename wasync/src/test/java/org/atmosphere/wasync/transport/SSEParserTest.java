@@ -0,0 +1,129 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SSEParserTest {
+
+    private final List<String[]> events = new ArrayList<String[]>();
+    private final List<Long> retries = new ArrayList<Long>();
+    private SSEParser parser;
+
+    @BeforeMethod
+    public void setUp() {
+        events.clear();
+        retries.clear();
+        parser = new SSEParser(new SSEParser.Listener() {
+            @Override
+            public void onEvent(String event, String data, String id) {
+                events.add(new String[]{event, data, id});
+            }
+
+            @Override
+            public void onRetry(long reconnectTimeInMilliseconds) {
+                retries.add(reconnectTimeInMilliseconds);
+            }
+        }, StandardCharsets.UTF_8);
+    }
+
+    private void parse(String s) {
+        parser.parse(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFields() {
+        parse(": a comment\nevent: update\nid: 42\nretry: 3000\ndata: first\ndata:second\n\n");
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0), new String[]{"update", "first\nsecond", "42"});
+        assertEquals(retries.size(), 1);
+        assertEquals(retries.get(0).longValue(), 3000);
+        assertEquals(parser.lastEventId(), "42");
+    }
+
+    @Test
+    public void testDefaultEventAndLineEndings() {
+        parse("data: a\r\n\r\ndata: b\r\rdata: c\n\n");
+
+        assertEquals(events.size(), 3);
+        assertEquals(events.get(0), new String[]{"message", "a", null});
+        assertEquals(events.get(1)[1], "b");
+        assertEquals(events.get(2)[1], "c");
+    }
+
+    @Test
+    public void testEventSpanningChunks() {
+        byte[] bytes = "event: price\r\ndata: caf\u00e9 \u20ac\r\ndata: 2\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            parser.parse(new byte[]{b});
+        }
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0), new String[]{"price", "caf\u00e9 \u20ac\n2", null});
+    }
+
+    @Test
+    public void testIncompleteEventIsNotDispatched() {
+        parse("data: a\n");
+        assertTrue(events.isEmpty());
+
+        parser.reset();
+        parse("data: b\n\n");
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0)[1], "b");
+    }
+
+    @Test
+    public void testIdOfIncompleteEventIsDiscarded() {
+        parse("id: 1\ndata: a\n\nid: 2\ndata: b\n");
+        assertEquals(events.size(), 1);
+        // Only the id of a dispatched event is the last event id
+        assertEquals(parser.lastEventId(), "1");
+
+        parser.reset();
+        parse("data: c\n\n");
+        assertEquals(events.get(1), new String[]{"message", "c", "1"});
+        assertEquals(parser.lastEventId(), "1");
+    }
+
+    @Test
+    public void testInvalidFields() {
+        parse("\uFEFFdata\nretry: 1s\nid: a\u0000b\nfoo: bar\n   \n\n");
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0), new String[]{"message", "", null});
+        assertTrue(retries.isEmpty());
+        assertNull(parser.lastEventId());
+    }
+
+    @Test
+    public void testEventWithoutData() {
+        parse("event: ping\n\ndata: x\n\n");
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0), new String[]{"message", "x", null});
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.asynchttpclient.RequestBuilder;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the {@link SSETransport} against a Netty server sending one event per response, then closing the connection.
+ */
+public class SSETransportTest extends NettyServerTest {
+
+    private final static String NONE = "none";
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile boolean truncated;
+    private final BlockingQueue<String> lastEventIds = new LinkedBlockingQueue<String>();
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    @BeforeMethod
+    public void reset() {
+        ids.set(0);
+        truncated = false;
+        lastEventIds.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                String lastEventId = request.headers().get(SSETransport.LAST_EVENT_ID);
+                lastEventIds.add(lastEventId == null ? NONE : lastEventId);
+
+                HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/event-stream");
+                response.headers().set(HttpHeaderNames.CONNECTION, "close");
+                ctx.write(response);
+                int id = ids.incrementAndGet();
+                ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer(
+                        "retry: 10\nid: " + id + "\ndata: event " + id + "\n\n", StandardCharsets.UTF_8)));
+                if (truncated && id == 1) {
+                    // The connection is closed in the middle of the next event
+                    ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer(
+                            "id: 2\ndata: unfinished\n", StandardCharsets.UTF_8)));
+                }
+                ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(ChannelFutureListener.CLOSE);
+            }
+        });
+    }
+
+    private Socket open(Options options, final BlockingQueue<String> messages) throws Exception {
+        Socket socket = client.create(options);
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.SSE)
+                .build());
+    }
+
+    @Test
+    public void testLastEventIdSentOnReconnect() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(client.newOptionsBuilder().waitBeforeUnlocking(100).build(), messages);
+        try {
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), NONE);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 1");
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), "1");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 2");
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), "2");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testIdOfUnfinishedEventNotSentOnReconnect() throws Exception {
+        truncated = true;
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = open(client.newOptionsBuilder().waitBeforeUnlocking(100).build(), messages);
+        try {
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), NONE);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 1");
+            // The server resumes after the last event received
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), "1");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 2");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testLastEventIdOnlySentBySSE() throws Exception {
+        File file = File.createTempFile("wasync", ".id");
+        try {
+            SSETransport.writeLastEventId(file, "7");
+            RequestBuilder shared = new RequestBuilder().setUrl(targetUrl);
+            SSETransport transport = new SSETransport(shared,
+                    client.newOptionsBuilder().reconnect(false).lastEventIdFile(file).build(),
+                    client.newRequestBuilder().method(Request.METHOD.GET).uri(targetUrl).transport(Request.TRANSPORT.SSE).build(),
+                    new ArrayList<FunctionWrapper>());
+            try {
+                assertEquals(transport.request(shared).getHeaders().get(SSETransport.LAST_EVENT_ID), "7");
+                // The builder shared with the other transports is left untouched
+                assertNull(shared.build().getHeaders().get(SSETransport.LAST_EVENT_ID));
+            } finally {
+                transport.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLastEventIdPersisted() throws Exception {
+        File file = File.createTempFile("wasync", ".id");
+        file.delete();
+        try {
+            BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+            Socket socket = open(client.newOptionsBuilder().waitBeforeUnlocking(100).reconnect(false)
+                    .lastEventIdFile(file).build(), messages);
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), NONE);
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 1");
+            socket.close();
+
+            // The transport may be closing itself as the server closed the connection, persisting the id meanwhile
+            long deadline = System.currentTimeMillis() + 5000;
+            while (SSETransport.readLastEventId(file) == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(SSETransport.readLastEventId(file), "1");
+
+            // A new socket, as if the process had been restarted, resumes after the persisted id.
+            socket = open(client.newOptionsBuilder().waitBeforeUnlocking(100).reconnect(false)
+                    .lastEventIdFile(file).build(), messages);
+            assertEquals(lastEventIds.poll(5, TimeUnit.SECONDS), "1");
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "event 2");
+            socket.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.atmosphere.wasync.transport;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 import java.util.Collections;
 import org.atmosphere.wasync.Client;
@@ -67,6 +70,33 @@ public class StreamTransportTest {
         assertEquals(decoder.getEvent(), Event.REOPENED);
     }
 
+    @Test
+    public void testReconnectRequestRebuiltOnlyWhenTrackingIdChanges() {
+        Client client = ClientFactory.getDefault().newClient();
+        Options options = client.newOptionsBuilder().runtime(null, false).reconnect(false).build();
+        Request request = client.newRequestBuilder()
+            .method(Request.METHOD.GET)
+            .uri("https://www.example.com/chat")
+            .queryString("X-Atmosphere-tracking-id", "0")
+            .transport(Request.TRANSPORT.STREAMING)
+            .build();
+        StreamTransport transport = new StreamTransport(new org.asynchttpclient.RequestBuilder().setUrl(request.uri()),
+                options, request, Collections.emptyList());
+
+        org.asynchttpclient.Request first = transport.reconnectRequest();
+        assertSame(transport.reconnectRequest(), first);
+        assertTrue(first.getUrl().contains("X-Atmosphere-tracking-id=0"), first.getUrl());
+
+        request.queryString().put("X-Atmosphere-tracking-id", Collections.singletonList("1234"));
+        org.asynchttpclient.Request second = transport.reconnectRequest();
+        assertNotSame(second, first);
+        assertTrue(second.getUrl().contains("X-Atmosphere-tracking-id=1234"), second.getUrl());
+        assertSame(transport.reconnectRequest(), second);
+
+        transport.reconnectTemplate.invalidate();
+        assertNotSame(transport.reconnectRequest(), second);
+    }
+
     private static class TestDecoder implements Decoder<String, Object> {
         private Event event;
 
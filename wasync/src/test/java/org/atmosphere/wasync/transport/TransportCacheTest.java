@@ -0,0 +1,207 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TransportCacheTest extends NettyServerTest {
+
+    private final AtomicInteger handshakes = new AtomicInteger();
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    /**
+     * Reject every WebSocket handshake, answer every other request with a stream.
+     */
+    @BeforeMethod
+    public void reset() {
+        handshakes.set(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch, new SimpleChannelInboundHandler<FullHttpRequest>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                if (request.headers().contains(HttpHeaderNames.UPGRADE)) {
+                    handshakes.incrementAndGet();
+                    DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_IMPLEMENTED);
+                    response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                    return;
+                }
+
+                DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                response.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                ctx.write(response);
+                ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8)));
+            }
+        });
+    }
+
+    private Socket open(TransportCache cache, final BlockingQueue<String> messages) throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().transportCache(cache).waitBeforeUnlocking(200).reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .transport(Request.TRANSPORT.STREAMING)
+                .build(), 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOrigin() {
+        assertEquals(TransportCache.origin("ws://Example.org/chat"), "http://Example.org:80");
+        assertEquals(TransportCache.origin("http://example.org:80/chat?a=b"), "http://example.org:80");
+        assertEquals(TransportCache.origin("wss://example.org/chat"), "https://example.org:443");
+        assertEquals(TransportCache.origin("https://example.org:8443"), "https://example.org:8443");
+    }
+
+    @Test
+    public void testTransportsKnownToFailAreSkipped() throws Exception {
+        TransportCache cache = new TransportCache(200, TimeUnit.MILLISECONDS);
+        String uri = "http://example.org/chat";
+        assertNull(cache.supported(uri, Request.TRANSPORT.WEBSOCKET));
+
+        cache.failed("ws://example.org/other", Request.TRANSPORT.WEBSOCKET);
+        cache.failed(uri, Request.TRANSPORT.SSE);
+        assertEquals(cache.supported(uri, Request.TRANSPORT.WEBSOCKET), Boolean.FALSE);
+        assertEquals(cache.transports(uri, Arrays.asList(Request.TRANSPORT.WEBSOCKET, Request.TRANSPORT.SSE, Request.TRANSPORT.LONG_POLLING)),
+                Arrays.asList(Request.TRANSPORT.LONG_POLLING));
+        // The last transport is always kept
+        assertEquals(cache.transports(uri, Arrays.asList(Request.TRANSPORT.WEBSOCKET, Request.TRANSPORT.SSE)),
+                Arrays.asList(Request.TRANSPORT.SSE));
+
+        // Not probed before half the TTL, only once afterwards
+        assertFalse(cache.probe(uri, Request.TRANSPORT.WEBSOCKET));
+        Thread.sleep(120);
+        assertTrue(cache.probe(uri, Request.TRANSPORT.WEBSOCKET));
+        assertFalse(cache.probe(uri, Request.TRANSPORT.WEBSOCKET));
+
+        Thread.sleep(100);
+        assertNull(cache.supported(uri, Request.TRANSPORT.WEBSOCKET));
+        assertEquals(cache.transports(uri, Arrays.asList(Request.TRANSPORT.WEBSOCKET, Request.TRANSPORT.LONG_POLLING)),
+                Arrays.asList(Request.TRANSPORT.WEBSOCKET, Request.TRANSPORT.LONG_POLLING));
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File file = File.createTempFile("wasync", ".transports");
+        try {
+            TransportCache cache = new TransportCache(1, TimeUnit.MINUTES, file);
+            cache.failed("ws://example.org/chat", Request.TRANSPORT.WEBSOCKET);
+            cache.succeeded("http://example.org/chat", Request.TRANSPORT.LONG_POLLING);
+
+            TransportCache restarted = new TransportCache(1, TimeUnit.MINUTES, file);
+            assertEquals(restarted.supported("http://example.org/", Request.TRANSPORT.WEBSOCKET), Boolean.FALSE);
+            assertEquals(restarted.supported("http://example.org/", Request.TRANSPORT.LONG_POLLING), Boolean.TRUE);
+            assertNull(restarted.supported("http://example.org/", Request.TRANSPORT.SSE));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPersistedOnlyWhenChanged() throws Exception {
+        File file = File.createTempFile("wasync", ".transports");
+        try {
+            TransportCache cache = new TransportCache(1, TimeUnit.MINUTES, file);
+            cache.succeeded("http://example.org/chat", Request.TRANSPORT.WEBSOCKET);
+            assertTrue(file.delete());
+
+            // The same result isn't written again
+            cache.succeeded("http://example.org/chat", Request.TRANSPORT.WEBSOCKET);
+            assertFalse(file.exists());
+
+            cache.failed("http://example.org/chat", Request.TRANSPORT.WEBSOCKET);
+            assertEquals(new TransportCache(1, TimeUnit.MINUTES, file)
+                    .supported("http://example.org/", Request.TRANSPORT.WEBSOCKET), Boolean.FALSE);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSocketsSkipAndProbeFailedTransport() throws Exception {
+        TransportCache cache = new TransportCache(2, TimeUnit.SECONDS);
+        BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+        Socket socket = open(cache, messages);
+        assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+        socket.close();
+        assertEquals(handshakes.get(), 1);
+        assertEquals(cache.supported(targetUrl, Request.TRANSPORT.WEBSOCKET), Boolean.FALSE);
+        assertEquals(cache.supported(targetUrl, Request.TRANSPORT.STREAMING), Boolean.TRUE);
+
+        // The next socket starts with the stream
+        socket = open(cache, messages);
+        assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+        socket.close();
+        assertEquals(handshakes.get(), 1);
+
+        // Once the failure is old enough, the WebSocket is probed in the background
+        Thread.sleep(1100);
+        socket = open(cache, messages);
+        assertEquals(messages.poll(5, TimeUnit.SECONDS), "hello");
+        socket.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (handshakes.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(handshakes.get(), 2);
+    }
+}
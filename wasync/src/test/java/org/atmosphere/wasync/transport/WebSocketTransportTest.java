@@ -0,0 +1,669 @@
+/*
+ * Copyright 2008-2025 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import org.asynchttpclient.RequestBuilder;
+import org.atmosphere.wasync.Client;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Correlator;
+import org.atmosphere.wasync.Encoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.PreparedMessage;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test the {@link WebSocketTransport} against a plain Netty WebSocket server which records the frames it receives
+ * and lets tests write frames to the client.
+ */
+public class WebSocketTransportTest extends NettyServerTest {
+
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<Frame>();
+    private final BlockingQueue<Integer> closeCodes = new LinkedBlockingQueue<Integer>();
+    private final BlockingQueue<Channel> channels = new LinkedBlockingQueue<Channel>();
+    private final Client client = ClientFactory.getDefault().newClient();
+
+    static final class Frame {
+        final Class<?> type;
+        final boolean finalFragment;
+        final byte[] content;
+
+        Frame(WebSocketFrame frame) {
+            this.type = frame.getClass();
+            this.finalFragment = frame.isFinalFragment();
+            this.content = ByteBufUtil.getBytes(frame.content());
+        }
+    }
+
+    @BeforeMethod
+    public void reset() {
+        frames.clear();
+        closeCodes.clear();
+        channels.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void initChannel(SocketChannel ch) {
+        NettyServer.http(ch,
+                new WebSocketServerProtocolHandler(WebSocketServerProtocolConfig.newBuilder()
+                        .websocketPath("/")
+                        .maxFramePayloadLength(65536)
+                        .handleCloseFrames(false)
+                        .build()),
+                new SimpleChannelInboundHandler<WebSocketFrame>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+                        if (frame instanceof CloseWebSocketFrame) {
+                            closeCodes.add(((CloseWebSocketFrame) frame).statusCode());
+                            ctx.writeAndFlush(frame.retainedDuplicate()).addListener(ChannelFutureListener.CLOSE);
+                        } else {
+                            frames.add(new Frame(frame));
+                        }
+                    }
+
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+                            channels.add(ctx.channel());
+                        }
+                        super.userEventTriggered(ctx, evt);
+                    }
+                });
+    }
+
+    private Socket open() throws Exception {
+        return open(client.create(client.newOptionsBuilder().reconnect(false).build()));
+    }
+
+    private Socket open(Socket socket) throws Exception {
+        return socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .build(), 5, TimeUnit.SECONDS);
+    }
+
+    private List<Frame> message() throws InterruptedException {
+        List<Frame> message = new ArrayList<Frame>();
+        Frame f;
+        do {
+            f = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(f, "Missing final fragment");
+            message.add(f);
+        } while (!f.finalFragment);
+        return message;
+    }
+
+    @Test
+    public void testInputStreamIsFragmented() throws Exception {
+        byte[] payload = new byte[WebSocketTransport.FRAGMENT_SIZE * 3 + 100];
+        new Random(0).nextBytes(payload);
+
+        Socket socket = open();
+        try {
+            socket.fire(new ByteArrayInputStream(payload)).get(5, TimeUnit.SECONDS);
+
+            List<Frame> message = message();
+            assertEquals(message.size(), 4);
+            assertEquals(message.get(0).type, BinaryWebSocketFrame.class);
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            for (int i = 0; i < message.size(); i++) {
+                Frame f = message.get(i);
+                assertTrue(f.content.length <= WebSocketTransport.FRAGMENT_SIZE);
+                if (i > 0) assertEquals(f.type, ContinuationWebSocketFrame.class);
+                received.write(f.content);
+            }
+            assertEquals(received.toByteArray(), payload);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testInputStreamFiredAsyncWithoutBlocking() throws Exception {
+        byte[] payload = new byte[WebSocketTransport.FRAGMENT_SIZE * 2 + 100];
+        new Random(0).nextBytes(payload);
+        final CountDownLatch readable = new CountDownLatch(1);
+        InputStream stream = new ByteArrayInputStream(payload) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    readable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        Socket socket = open();
+        try {
+            // Returns while the stream can't be read yet
+            CompletableFuture<Void> written = socket.fireAsync(stream).toCompletableFuture();
+            assertFalse(written.isDone());
+
+            readable.countDown();
+            written.get(5, TimeUnit.SECONDS);
+            assertEquals(received(message()), payload);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testReaderIsFragmented() throws Exception {
+        StringBuilder b = new StringBuilder();
+        // A surrogate pair straddling the end of the first fragment
+        for (int i = 0; i < WebSocketTransport.FRAGMENT_SIZE - 1; i++) {
+            b.append('a');
+        }
+        b.append("\uD83D\uDE00");
+        for (int i = 0; i < WebSocketTransport.FRAGMENT_SIZE; i++) {
+            b.append('b');
+        }
+        String payload = b.toString();
+
+        Socket socket = open();
+        try {
+            socket.fire(new StringReader(payload)).get(5, TimeUnit.SECONDS);
+
+            List<Frame> message = message();
+            assertEquals(message.size(), 3);
+            assertEquals(message.get(0).type, TextWebSocketFrame.class);
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            for (Frame f : message) {
+                // Every fragment must be valid UTF-8 on its own
+                assertFalse(new String(f.content, StandardCharsets.UTF_8).contains("\uFFFD"));
+                received.write(f.content);
+            }
+            assertEquals(new String(received.toByteArray(), StandardCharsets.UTF_8), payload);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFileIsFragmented() throws Exception {
+        byte[] payload = new byte[WebSocketTransport.FRAGMENT_SIZE * 2 + 200];
+        new Random(0).nextBytes(payload);
+        Path file = Files.createTempFile("wasync", ".bin");
+
+        Socket socket = open();
+        try {
+            Files.write(file, payload);
+            socket.fire(file).get(5, TimeUnit.SECONDS);
+            assertEquals(received(message()), payload);
+
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                // Sent from the channel's position, which doesn't change
+                channel.position(100);
+                socket.fire(channel).get(5, TimeUnit.SECONDS);
+                assertEquals(channel.position(), 100);
+                assertEquals(received(message()), Arrays.copyOfRange(payload, 100, payload.length));
+            } finally {
+                channel.close();
+            }
+        } finally {
+            socket.close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStreamsFailWhenNotConnected() throws Exception {
+        WebSocketTransport transport = new WebSocketTransport(new RequestBuilder(),
+                client.newOptionsBuilder().reconnect(false).build(),
+                client.newRequestBuilder().method(Request.METHOD.GET).uri(targetUrl).build(),
+                new ArrayList<FunctionWrapper>());
+        Path file = Files.createTempFile("wasync", ".bin");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // Neither connected yet, nor once closed
+            for (int i = 0; i < 2; i++) {
+                try {
+                    transport.sendMessage(new ByteArrayInputStream(new byte[10]));
+                    fail("InputStream written without a WebSocket");
+                } catch (IOException e) {
+                    // expected
+                }
+                try {
+                    transport.sendMessage(new StringReader("a"));
+                    fail("Reader written without a WebSocket");
+                } catch (IOException e) {
+                    // expected
+                }
+                try {
+                    transport.sendMessage(channel);
+                    fail("FileChannel written without a WebSocket");
+                } catch (IOException e) {
+                    // expected
+                }
+                transport.close();
+            }
+        } finally {
+            channel.close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testByteBufferIsFragmented() throws Exception {
+        byte[] payload = new byte[WebSocketTransport.FRAGMENT_SIZE * 2 + 100];
+        new Random(0).nextBytes(payload);
+
+        Socket socket = open();
+        try {
+            socket.fireAsync(ByteBuffer.wrap(payload)).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(received(message()), payload);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static byte[] received(List<Frame> message) throws IOException {
+        assertEquals(message.size(), 3);
+        assertEquals(message.get(0).type, BinaryWebSocketFrame.class);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (int i = 0; i < message.size(); i++) {
+            Frame f = message.get(i);
+            assertTrue(f.content.length <= WebSocketTransport.FRAGMENT_SIZE);
+            if (i > 0) assertEquals(f.type, ContinuationWebSocketFrame.class);
+            received.write(f.content);
+        }
+        return received.toByteArray();
+    }
+
+    @Test
+    public void testSmallStreamIsOneFrame() throws Exception {
+        Socket socket = open();
+        try {
+            socket.fire(new StringReader("PING")).get(5, TimeUnit.SECONDS);
+
+            List<Frame> message = message();
+            assertEquals(message.size(), 1);
+            assertEquals(message.get(0).type, TextWebSocketFrame.class);
+            assertEquals(new String(message.get(0).content, StandardCharsets.UTF_8), "PING");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testCoalescedWritesAreFlushedInOrder() throws Exception {
+        Socket socket = open(client.create(client.newOptionsBuilder().reconnect(false).writeLinger(200).build()));
+        try {
+            CompletableFuture<Void> a = socket.fireAsync("a").toCompletableFuture();
+            CompletableFuture<Void> b = socket.fireAsync("b").toCompletableFuture();
+            CompletableFuture<Void> c = socket.fireAsync(new byte[]{1}).toCompletableFuture();
+            assertFalse(a.isDone());
+
+            c.get(5, TimeUnit.SECONDS);
+            assertTrue(a.isDone() && b.isDone());
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "a");
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "b");
+            assertEquals(frames.poll(5, TimeUnit.SECONDS).type, BinaryWebSocketFrame.class);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testWritesAreSentOnFlush() throws Exception {
+        Socket socket = open();
+        try {
+            CompletableFuture<Void> a = socket.write("a").toCompletableFuture();
+            CompletableFuture<Void> b = socket.write(new byte[]{1}).toCompletableFuture();
+            assertNull(frames.poll(500, TimeUnit.MILLISECONDS));
+            assertFalse(a.isDone() || b.isDone());
+
+            socket.flush();
+            b.get(5, TimeUnit.SECONDS);
+            assertTrue(a.isDone());
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "a");
+            assertEquals(frames.poll(5, TimeUnit.SECONDS).type, BinaryWebSocketFrame.class);
+
+            // Sending flushes what has been written before
+            socket.write("b");
+            socket.fireAsync("c").toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "b");
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "c");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testPreparedMessageSentToEverySocket() throws Exception {
+        Request request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .encoder(new Encoder<Integer, String>() {
+                    @Override
+                    public String encode(Integer i) {
+                        return "n=" + i;
+                    }
+                })
+                .build();
+        List<Socket> sockets = new ArrayList<Socket>();
+        for (int i = 0; i < 3; i++) {
+            sockets.add(client.create(client.newOptionsBuilder().reconnect(false).build()).open(request, 5, TimeUnit.SECONDS));
+        }
+        try {
+            PreparedMessage message = client.prepare(request, 42);
+            assertEquals(message.encoded(), "n=42");
+
+            message.fire(sockets).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            message.fire(sockets.subList(0, 1)).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 4; i++) {
+                Frame f = frames.poll(5, TimeUnit.SECONDS);
+                assertEquals(f.type, TextWebSocketFrame.class);
+                assertEquals(new String(f.content, StandardCharsets.UTF_8), "n=42");
+            }
+        } finally {
+            for (Socket s : sockets) {
+                s.close();
+            }
+        }
+    }
+
+    @Test
+    public void testBufferEncodersSentWithoutCopy() throws Exception {
+        final ByteBuffer pooled = ByteBuffer.allocateDirect(16);
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.open(client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl)
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .encoder(new Encoder<Integer, ByteBuffer>() {
+                    @Override
+                    public ByteBuffer encode(Integer i) {
+                        pooled.clear();
+                        pooled.putInt(i).flip();
+                        return pooled;
+                    }
+                })
+                .encoder(new Encoder<Long, CharSequence>() {
+                    @Override
+                    public CharSequence encode(Long l) {
+                        return new StringBuilder("l=").append(l);
+                    }
+                })
+                .build(), 5, TimeUnit.SECONDS);
+        try {
+            socket.fireAsync(42).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            Frame f = frames.poll(5, TimeUnit.SECONDS);
+            assertEquals(f.type, BinaryWebSocketFrame.class);
+            assertEquals(ByteBuffer.wrap(f.content).getInt(), 42);
+            // The buffer can be reused
+            assertEquals(pooled.remaining(), 4);
+
+            socket.fire(7L);
+            f = frames.poll(5, TimeUnit.SECONDS);
+            assertEquals(f.type, TextWebSocketFrame.class);
+            assertEquals(new String(f.content, StandardCharsets.UTF_8), "l=7");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testQueuedWritesAreSentWhileWritable() throws Exception {
+        Socket socket = open(client.create(client.newOptionsBuilder().reconnect(false).outboundQueueSize(2).build()));
+        try {
+            assertTrue(socket.isWritable());
+            socket.fireAsync("a").toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(new String(frames.poll(5, TimeUnit.SECONDS).content, StandardCharsets.UTF_8), "a");
+            assertTrue(socket.isWritable());
+        } finally {
+            socket.close();
+        }
+        assertFalse(socket.isWritable());
+    }
+
+    @Test
+    public void testFragmentedTextMessageIsReassembled() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        open(socket);
+        try {
+            Channel channel = channels.poll(5, TimeUnit.SECONDS);
+            channel.write(new TextWebSocketFrame(false, 0, "Hello "));
+            channel.write(new ContinuationWebSocketFrame(false, 0, "fragmented "));
+            channel.writeAndFlush(new ContinuationWebSocketFrame(true, 0, "world"));
+
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "Hello fragmented world");
+            channel.writeAndFlush(new TextWebSocketFrame("unfragmented"));
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "unfragmented");
+            assertTrue(messages.isEmpty());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testCharacterSplitBetweenFragmentsIsDecoded() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        Options options = client.newOptionsBuilder().reconnect(false).build();
+        Socket socket = client.create(options);
+        // The runtime doesn't aggregate the fragments, the transport does
+        assertFalse(options.runtime().getConfig().isAggregateWebSocketFrameFragments());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        });
+        open(socket);
+        try {
+            byte[] utf8 = "caf\u00e9 \uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+            Channel channel = channels.poll(5, TimeUnit.SECONDS);
+            // Both the 2 bytes and the 4 bytes sequences are split
+            channel.write(new TextWebSocketFrame(false, 0, Unpooled.wrappedBuffer(utf8, 0, 4)));
+            channel.write(new ContinuationWebSocketFrame(false, 0, Unpooled.wrappedBuffer(utf8, 4, 3)));
+            channel.writeAndFlush(new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(utf8, 7, utf8.length - 7)));
+
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), "caf\u00e9 \uD83D\uDE00");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testFragmentedBinaryMessageIsReassembled() throws Exception {
+        final BlockingQueue<byte[]> messages = new LinkedBlockingQueue<byte[]>();
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).binary(true).build());
+        socket.on(Event.MESSAGE, new Function<byte[]>() {
+            @Override
+            public void on(byte[] m) {
+                messages.add(m);
+            }
+        });
+        open(socket);
+        try {
+            Channel channel = channels.poll(5, TimeUnit.SECONDS);
+            channel.write(new BinaryWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new byte[]{1, 2, 3})));
+            channel.writeAndFlush(new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(new byte[]{4, 5})));
+
+            assertEquals(messages.poll(5, TimeUnit.SECONDS), new byte[]{1, 2, 3, 4, 5});
+            assertNull(messages.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testMessageTooBigClosesConnection() throws Exception {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+        final BlockingQueue<IOException> errors = new LinkedBlockingQueue<IOException>();
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).maxMessageSize(10).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String m) {
+                messages.add(m);
+            }
+        }).on(new Function<IOException>() {
+            @Override
+            public void on(IOException e) {
+                errors.add(e);
+            }
+        });
+        open(socket);
+        try {
+            Channel channel = channels.poll(5, TimeUnit.SECONDS);
+            channel.write(new TextWebSocketFrame(false, 0, "123456"));
+            channel.writeAndFlush(new ContinuationWebSocketFrame(true, 0, "789012"));
+
+            assertEquals(closeCodes.poll(5, TimeUnit.SECONDS), Integer.valueOf(1009));
+            assertNotNull(errors.poll(5, TimeUnit.SECONDS));
+            assertTrue(messages.isEmpty());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testRequestsCompletedByTheirReplies() throws Exception {
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(false).correlator(new Correlator() {
+            @Override
+            public Object inject(Object request, String id) {
+                return id + "|" + request;
+            }
+
+            @Override
+            public String extract(Object message) {
+                String m = message.toString();
+                int i = m.indexOf('|');
+                return i > 0 ? m.substring(0, i) : null;
+            }
+        }).build());
+        open(socket);
+        try {
+            Channel channel = channels.poll(5, TimeUnit.SECONDS);
+            CompletableFuture<String> a = socket.request("a", String.class, 5, TimeUnit.SECONDS).toCompletableFuture();
+            CompletableFuture<String> b = socket.request("b", String.class, 5, TimeUnit.SECONDS).toCompletableFuture();
+            CompletableFuture<String> lost = socket.request("c", String.class, 200, TimeUnit.MILLISECONDS).toCompletableFuture();
+            String first = new String(message().get(0).content, StandardCharsets.UTF_8);
+            String second = new String(message().get(0).content, StandardCharsets.UTF_8);
+            assertEquals(first.substring(first.indexOf('|')), "|a");
+            assertEquals(second.substring(second.indexOf('|')), "|b");
+
+            // Replied out of order, with an unrelated message in between
+            channel.write(new TextWebSocketFrame(second.replace("|b", "|B")));
+            channel.write(new TextWebSocketFrame("unrelated"));
+            channel.writeAndFlush(new TextWebSocketFrame(first.replace("|a", "|A")));
+
+            assertEquals(a.get(5, TimeUnit.SECONDS), first.replace("|a", "|A"));
+            assertEquals(b.get(5, TimeUnit.SECONDS), second.replace("|b", "|B"));
+            try {
+                lost.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException, e.getCause().toString());
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testReconnectDoesNotBlockTheEventLoop() throws Exception {
+        // Reconnected without pause, by the event loop which reads the close frame
+        Socket socket = client.create(client.newOptionsBuilder().reconnect(true).build());
+        final CountDownLatch reopened = new CountDownLatch(1);
+        socket.on(Event.REOPENED, new Function<String>() {
+            @Override
+            public void on(String t) {
+                reopened.countDown();
+            }
+        });
+        open(socket);
+        Socket other = null;
+        try {
+            channels.poll(5, TimeUnit.SECONDS).writeAndFlush(new CloseWebSocketFrame(1001, "Going away"));
+            assertTrue(reopened.await(5, TimeUnit.SECONDS));
+            assertNotNull(channels.poll(5, TimeUnit.SECONDS));
+
+            // The event loop still serves the other sockets
+            other = open();
+            assertNotNull(channels.poll(5, TimeUnit.SECONDS));
+        } finally {
+            socket.close();
+            if (other != null) {
+                other.close();
+            }
+        }
+    }
+}